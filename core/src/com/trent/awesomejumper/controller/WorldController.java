@@ -2,16 +2,20 @@ package com.trent.awesomejumper.controller;
 
 import com.badlogic.gdx.math.Vector2;
 import com.trent.awesomejumper.controller.collision.CollisionController;
+import com.trent.awesomejumper.controller.entitymanagement.EntityList;
+import com.trent.awesomejumper.controller.entitymanagement.EntityQuery;
 import com.trent.awesomejumper.engine.entity.Entity;
 import com.trent.awesomejumper.engine.physics.ProjectileRay;
 import com.trent.awesomejumper.engine.physics.Ray;
 import com.trent.awesomejumper.models.projectile.Projectile;
+import com.trent.awesomejumper.utils.Profiler;
 import com.trent.awesomejumper.utils.Utils;
 
 import java.util.Iterator;
 import java.util.LinkedList;
 
 import static com.trent.awesomejumper.utils.PhysicalConstants.MIN_WALKING_SPEED;
+import static com.trent.awesomejumper.utils.Profiler.Phase.*;
 
 /**
  * Created by Sinthu on 12.06.2015.
@@ -46,7 +50,8 @@ public class WorldController {
      * - remove all dead entities from the game data (garbage collection)
      * - apply impulses to all entities that are left alive
      * - limit entity speed
-     * - finally update positional information of all entities
+     * - finally update positional information of all entities, which also moves them between
+     *   the cells of the spatial hashing grid if necessary
      *
      * @param delta time between frames
      */
@@ -55,7 +60,15 @@ public class WorldController {
 
         worldTime += delta;
 
-        for (Entity e : worldContainer.getEntities()) {
+        // Re-grid the spatial hash between two frames if a tuning was requested
+        worldContainer.applyPendingRegrid();
+
+        // Make entities registered since the last frame visible to the passes below
+        worldContainer.flushEntities();
+        EntityList entities = worldContainer.getEntities();
+
+        for (int i = 0; i < entities.size(); i++) {
+            Entity e = entities.get(i);
             e.getAcceleration().scl(delta);
             e.getVelocity().add(e.getAcceleration());
         }
@@ -65,22 +78,18 @@ public class WorldController {
          * Resolve entity/world collisions.
          * Affected entities: all.
          */
-        for (Entity e : worldContainer.getEntities()) {
-            if (!e.isAlive() || !e.getBody().isCollisionDetectionEnabled())
-                continue;
-            collisionController.resolveWorldCollisions(e, delta);
-        }
+        Profiler.begin(WORLD_COLLISIONS);
+        collisionController.resolveWorldCollisions(entities, delta);
+        Profiler.end(WORLD_COLLISIONS);
 
 
         /**
-         * Resolve entity/entity collisions.
+         * Resolve entity/entity collisions for the pairs found by the broad phase.
          * Affected entities: only those who can move.
          */
-        for (Entity e : worldContainer.getMobileEntities()) {
-            if (!e.isAlive() || !e.getBody().isCollisionDetectionEnabled())
-                continue;
-            collisionController.resolveEntityCollisions(e, worldContainer.getEntitiesNearby(e), delta);
-        }
+        Profiler.begin(ENTITY_COLLISIONS);
+        collisionController.resolveEntityCollisions(delta);
+        Profiler.end(ENTITY_COLLISIONS);
 
         /**
          * Resolve entity/projectile collisions.
@@ -88,23 +97,48 @@ public class WorldController {
          * TODO: not projectiles, but penetration points need to be addressed here.
          */
 
-        for (Entity e : worldContainer.getLivingEntities()) {
-            for (Projectile p : worldContainer.getProjectiles())
-                collisionController.projectileCollisionDetection(e, p, delta);
+        EntityQuery livingEntities = worldContainer.getLivingEntities();
+        EntityQuery projectiles = worldContainer.getProjectiles();
+        Profiler.begin(PROJECTILE_COLLISIONS);
+        for (int i = 0; i < livingEntities.size(); i++) {
+            Entity e = livingEntities.get(i);
+            for (int j = 0; j < projectiles.size(); j++) {
+                Projectile p = (Projectile) projectiles.get(j);
+                if (!e.isAlive())
+                    break;
+                if (p.isAlive())
+                    collisionController.projectileCollisionDetection(e, p, delta);
+            }
         }
 
-        for(ProjectileRay r : worldContainer.getProjectileRays()) {
+        Profiler.end(PROJECTILE_COLLISIONS);
+
+        // Spent rays are dropped right after their cast
+        Profiler.begin(RAY_CASTS);
+        for (Iterator<ProjectileRay> it = worldContainer.getProjectileRays().iterator(); it.hasNext(); ) {
+            ProjectileRay r = it.next();
             collisionController.projectileRayCast(r);
+            if (!r.isActive())
+                it.remove();
         }
-        
+        Profiler.end(RAY_CASTS);
+
+        Profiler.begin(GARBAGE_REMOVAL);
         worldContainer.garbageRemoval();
-        worldContainer.updateSpatialHashingData();
+        Profiler.end(GARBAGE_REMOVAL);
+
+        /**
+         * Integration. Includes the spatial updates of moved bodies. Bodies which changed hash
+         * cells are re-bucketed, which is also profiled on its own as SPATIAL_UPDATE.
+         */
+        Profiler.begin(INTEGRATION);
         addImpulses();
         manageEntitySpeed();
 
-        for (Entity e : worldContainer.getEntities()) {
-            e.update(delta);
+        for (int i = 0; i < entities.size(); i++) {
+            entities.get(i).update(delta);
         }
+        Profiler.end(INTEGRATION);
 
 
         /**
@@ -118,7 +152,9 @@ public class WorldController {
 
 
     private void addImpulses() {
-        for (Entity e : worldContainer.getEntities()) {
+        EntityList entities = worldContainer.getEntities();
+        for (int i = 0; i < entities.size(); i++) {
+            Entity e = entities.get(i);
             LinkedList<Vector2> impulseList = e.getBody().getImpulses();
             for (Iterator<Vector2> it = impulseList.iterator(); it.hasNext(); ) {
                 e.getVelocity().add(it.next());
@@ -134,7 +170,9 @@ public class WorldController {
      * TODO: TIE MIN/MAX SPEED ON ENTITIES
      */
     private void manageEntitySpeed() {
-        for (Entity entity : worldContainer.getEntities()) {
+        EntityList entities = worldContainer.getEntities();
+        for (int i = 0; i < entities.size(); i++) {
+            Entity entity = entities.get(i);
             if (entity.getAcceleration().x == 0) {
                 entity.getVelocity().x *= entity.getBody().getFriction();
 
@@ -175,4 +213,8 @@ public class WorldController {
     public void setPlayer() {
         collisionController.setPlayer();
     }
+
+    public void dispose() {
+        collisionController.dispose();
+    }
 }
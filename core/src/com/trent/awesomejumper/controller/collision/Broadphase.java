@@ -0,0 +1,84 @@
+package com.trent.awesomejumper.controller.collision;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.trent.awesomejumper.engine.entity.Entity;
+
+/**
+ * Broad phase of the entity/entity collision detection. Finds all pairs of entities whose
+ * bounds might overlap, so that the narrow phase of the CollisionController only has to check
+ * those pairs with SAT.
+ * The implementation is chosen once at startup, see {@link com.trent.awesomejumper.game.AwesomeJumperMain#setBroadphaseType(Type)}.
+ */
+public interface Broadphase {
+
+    /**
+     * Available broad phase implementations.
+     */
+    enum Type {
+        SPATIAL_HASH("HASH"),
+        SWEEP_AND_PRUNE("SAP"),
+        DYNAMIC_TREE("TREE");
+
+        private final String tag;
+
+        Type(String tag) {
+            this.tag = tag;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    /**
+     * Adds an entity to the broad phase. Entities without a body or that have already been added
+     * are ignored.
+     */
+    void add(Entity entity);
+
+    /**
+     * Removes an entity from the broad phase.
+     */
+    void remove(Entity entity);
+
+    /**
+     * Notifies the broad phase that the bounds of an entity have changed.
+     * Called by the body of the entity after each positional update.
+     */
+    void update(Entity entity);
+
+    /**
+     * Removes all entities from the broad phase.
+     */
+    void clear();
+
+    /**
+     * Fills the given buffer with all potentially overlapping pairs. Each pair is stored as two
+     * consecutive entries and is reported exactly once per call.
+     *
+     * @param pairs buffer receiving the pairs, cleared before use
+     * @return the buffer passed in
+     */
+    Array<Entity> findPairs(Array<Entity> pairs);
+
+    /**
+     * Fills the given buffer with all entities whose bounds might overlap the rectangle (x,y,w,h).
+     *
+     * @param sink buffer receiving the entities, cleared before use
+     * @return the buffer passed in
+     */
+    Array<Entity> query(float x, float y, float width, float height, Array<Entity> sink);
+
+    /**
+     * Fills the given buffer with all entities whose bounds might be crossed by the segment
+     * start -> end. The entities are not ordered.
+     *
+     * @param sink buffer receiving the entities, cleared before use
+     * @return the buffer passed in
+     */
+    Array<Entity> rayCast(Vector2 start, Vector2 end, Array<Entity> sink);
+
+    Type getType();
+
+}
@@ -4,18 +4,21 @@ package com.trent.awesomejumper.controller.collision;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.trent.awesomejumper.controller.entitymanagement.EntityList;
+import com.trent.awesomejumper.controller.entitymanagement.EntityQuery;
+import com.trent.awesomejumper.controller.entitymanagement.EntityRegistry;
 import com.trent.awesomejumper.controller.entitymanagement.WorldContainer;
 import com.trent.awesomejumper.controller.rendering.PopUpRenderer;
 import com.trent.awesomejumper.engine.entity.Entity;
-import com.trent.awesomejumper.engine.modelcomponents.popups.Message;
 import com.trent.awesomejumper.engine.physics.CollisionBox;
 import com.trent.awesomejumper.engine.physics.ProjectileRay;
 import com.trent.awesomejumper.engine.physics.Ray;
+import com.trent.awesomejumper.game.AwesomeJumperMain;
 import com.trent.awesomejumper.models.Player;
 import com.trent.awesomejumper.models.projectile.Projectile;
 import com.trent.awesomejumper.models.weapons.Weapon;
 import com.trent.awesomejumper.tiles.Tile;
-import com.trent.awesomejumper.utils.Interval;
 import com.trent.awesomejumper.utils.Utils;
 
 import java.util.ArrayList;
@@ -25,10 +28,13 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
-import static com.trent.awesomejumper.controller.entitymanagement.WorldContainer.SPATIAL_HASH_GRID_SIZE;
 import static com.trent.awesomejumper.controller.rendering.PopUpRenderer.PopUpCategories.MISC;
 import static com.trent.awesomejumper.engine.modelcomponents.ModelComponent.ComponentID.HEALTH;
+import static com.trent.awesomejumper.engine.modelcomponents.ModelComponent.ComponentID.PROJECTILE;
+import static com.trent.awesomejumper.engine.modelcomponents.ModelComponent.ComponentID.WEAPON_COMPONENT;
 import static com.trent.awesomejumper.utils.PhysicalConstants.FRICTIONAL_COEFFICIENT;
 import static com.trent.awesomejumper.utils.Utils.dot;
 import static com.trent.awesomejumper.utils.Utils.getOverlap;
@@ -38,6 +44,8 @@ import static com.trent.awesomejumper.utils.Utils.sub;
 
 /**
  * Collision controller. Resolves any relevant physical collisions between all entity types.
+ * The world collisions of all entities except projectiles can be resolved in parallel, see
+ * {@link #setWorldCollisionThreads(int)}.
  * Created by Sinthu on 04.11.2015.
  */
 public class CollisionController {
@@ -46,18 +54,48 @@ public class CollisionController {
     private Player player;
     private Vector2 resolutionVector;
     public static int calledPerFrame = 0;
+    public static int broadphasePairs = 0;
+    public static int cachedRejects = 0;
+    public static int cachedContacts = 0;
+    public static int solverContacts = 0;
+
+    // Contacts of the entity/entity pairs of the previous frames
+    private ContactCache entityContacts = new ContactCache();
+
+    // Solver for the entity/entity contacts of a frame
+    private ContactSolver contactSolver = new ContactSolver();
+
+    // Scratch of the serial path, resolutionVector is its resolution vector
+    private CollisionScratch scratch = new CollisionScratch();
+
+    // Parallel world collision stage, only used with more than one thread
+    private int worldCollisionThreads = 1;
+    private ForkJoinPool pool;
+    private WorldCollisionTask[] worldCollisionTasks = new WorldCollisionTask[0];
+    private WorldCollisionStage worldCollisionStage = new WorldCollisionStage();
+    private Array<Entity> worldProjectiles = new Array<>(false, 64);
+
+    // Reusable buffers for collision candidates gathered from the spatial hashing data
+    private Array<Entity> entityPairs = new Array<>(false, 32);
+    private Array<Entity> rayCandidates = new Array<>(false, 32);
 
     // Interval variables for determining collision candidates
     private int cdStartX, cdEndX;   // x axis
     private int cdStartY, cdEndY;   // y axis
 
+    // Reusable intersection points of ray casts
+    private Vector2 intersectionPoint = new Vector2();
+    private Vector2 closestIntersectionPoint = new Vector2();
+
     // CONSTRUCTOR
     // ---------------------------------------------------------------------------------------------
 
     public CollisionController(WorldContainer worldContainer) {
         this.worldContainer = worldContainer;
         this.player = worldContainer.getPlayer();
-        this.resolutionVector = new Vector2(0f, 0f);
+        this.resolutionVector = scratch.resolutionVector;
+        setWorldCollisionThreads(AwesomeJumperMain.getWorldCollisionThreads());
+        setSolverIterations(AwesomeJumperMain.getSolverIterations());
     }
 
 
@@ -70,121 +108,90 @@ public class CollisionController {
     // ---------------------------------------------------------------------------------------------
 
     /**
-     * Detects and resolves any occurring collisions between entities in the world.
-     * @param entity entity whose collisions should be resolved.
-     * @param others any set implenentation containing any entities.
+     * Detects and resolves the collisions between all pairs of entities reported by the broad phase.
+     * The contacts of all colliding pairs are gathered first and then solved together by the
+     * contact solver, so an entity resolves all of its contacts in the same frame. Contacts of
+     * pairs the broad phase no longer reports are dropped afterwards.
      * @param delta  time which has passed since the last update frame
      */
-    public void resolveEntityCollisions(Entity entity, Set<? extends Entity> others, float delta) {
-
-        entity.getVelocity().scl(delta);
-
-        for (Entity other : others) {
-            /**
-             * If the two participants are the same, one of them is part of the other such as equipped weapons etc.
-             * or one of them is declared "dead", move to the next entity in neighbourhood
-             */
-            if (other.equals(entity) || !other.isAlive() || !other.getBody().isCollisionDetectionEnabled() || other.getOwner().equals(entity) || entity.getOwner().equals(other))
-                continue;
-
-            CollisionBox entityBox = entity.getBounds();
-            CollisionBox otherBox = other.getBounds();
-
-            /**
-             * TODO: implement better way of pickup collision
-             * TODO: if inventory is full, collision detection based equipping should not trigger.
-             * Weapon/pickup collision detection
-             */
-            if (entity.equals(player) && !player.getWeaponInventory().isInventoryFull()) {
-                switch (other.getType()) {
-                    case DROPPED_WEAPON_ENTITY:
-                        if (checkCollision(entityBox, otherBox)) {
-                            player.getWeaponInventory().equipWeapon((Weapon) other);
-                            continue;
-                        }
-                        break;
-
-                    case PICKUP_ENTITY:
-                        break;
-                }
+    public void resolveEntityCollisions(float delta) {
+        Array<Entity> pairs = worldContainer.getBroadphase().findPairs(entityPairs);
+        broadphasePairs = pairs.size / 2;
+        entityContacts.beginFrame();
+        contactSolver.begin();
+        for (int i = 0; i < pairs.size; i += 2) {
+            addEntityContact(pairs.get(i), pairs.get(i + 1));
+        }
+        contactSolver.solve();
+        solverContacts = contactSolver.getContactCount();
+        entityContacts.removeStale();
+        publishCounters(scratch);
+        updateContactCount();
+    }
 
-            }
+    /**
+     * Detects a collision between two entities and adds it to the contact solver. Pairs in which
+     * neither entity can move are skipped. Otherwise the mobile entity is treated as the active
+     * participant, the player taking precedence so pickups are handled regardless of pair order.
+     * @param a     first entity of the pair
+     * @param b     second entity of the pair
+     */
+    private void addEntityContact(Entity a, Entity b) {
+        Entity entity = a;
+        Entity other = b;
+        EntityQuery mobileEntities = worldContainer.getMobileEntities();
+        if (!mobileEntities.contains(a)) {
+            if (!mobileEntities.contains(b))
+                return;
+            entity = b;
+            other = a;
+        } else if (b.equals(player)) {
+            entity = b;
+            other = a;
+        }
 
-            if (other.equals(player) && !player.getWeaponInventory().isInventoryFull()) {
-                switch (entity.getType()) {
-                    case DROPPED_WEAPON_ENTITY:
-                        if (checkCollision(entityBox, otherBox)) {
-                            player.getWeaponInventory().equipWeapon((Weapon) entity);
-                            continue;
-                        }
-                        break;
-                }
-            } else if (checkCollision(otherBox, entityBox)) {
-
-                /**
-                 * deltaVelocity - Relative velocity between both participants of the collision.
-                 * collisionNormal - normal to the collision plane
-                 */
-                Vector2 deltaVelocity = sub(other.getVelocity(), entity.getVelocity().cpy().scl(1 / delta));
-                Vector2 collisionNormal = resolutionVector.cpy().nor();
-                /**
-                 * Calculate impulses to be added to each entity. Adding tangential and normal
-                 * components to form one impulse vector. The magnitude in direction of the collision
-                 * normal is negatively! scaled with the elasticity of the entity to push both entities
-                 * away from each other.
-                 */
-                Vector2 impulseEntity = createReflectionImpulse(deltaVelocity, collisionNormal, entity.getBody().getElasticity());
-                Vector2 impulseOther = createReflectionImpulse(deltaVelocity, collisionNormal, other.getBody().getElasticity());
-
-                float entityMass = entity.getBody().getMass();
-                float otherMass = other.getBody().getMass();
-                float massSum = entityMass + otherMass;
-
-                /**
-                 * If the current entity did not collide with the world earlier, it can receive the
-                 * impulse calculated above.
-                 */
-                if (!entity.getBody().isCollidedWithWorld()) {
-                    entity.getBody().addImpulse(impulseEntity.cpy().scl(otherMass / massSum));
-                }
+        if (!entity.isAlive() || !entity.getBody().isCollisionDetectionEnabled())
+            return;
 
-                /**
-                 * If the opponent entity (other) did not collide with the world earlier, it can
-                 * receive the impulse. Also, the opposing entity is pushed backwards to resolve
-                 * the collision.
-                 */
+        /**
+         * If the two participants are the same, one of them is part of the other such as equipped weapons etc.
+         * or one of them is declared "dead", the pair is skipped
+         */
+        if (other.equals(entity) || !other.isAlive() || !other.getBody().isCollisionDetectionEnabled() || other.getOwner().equals(entity) || entity.getOwner().equals(other))
+            return;
 
-                if (!other.getBody().isCollidedWithWorld()) {
-                    other.getPosition().add(resolutionVector.cpy().scl(-1f));
-                    other.getBody().addImpulse(impulseOther.cpy().scl(-entityMass / massSum));
-                }
-                /**
-                 * If the opponent did collide with the world, we need to stop our movement.
-                 * The resolution vector is added to our position so the collision can be resolved.
-                 */
-                else {
-                    if (resolutionVector.x != 0f)
-                        entity.setVelocityX(0f);
-                    if (resolutionVector.y != 0f)
-                        entity.setVelocityY(0f);
-                    if (other.getBody().isCollidedWithWorld())
-                        entity.getBody().setCollidedWithWorld(true);
-                    entity.getPosition().add(resolutionVector);
-                }
+        CollisionBox entityBox = entity.getBounds();
+        CollisionBox otherBox = other.getBounds();
 
-                entity.getVelocity().scl(1 / delta);
-                return;
+        /**
+         * TODO: implement better way of pickup collision
+         * TODO: if inventory is full, collision detection based equipping should not trigger.
+         * Weapon/pickup collision detection
+         */
+        if (entity.equals(player) && !player.getWeaponInventory().isInventoryFull()) {
+            switch (other.getType()) {
+                case DROPPED_WEAPON_ENTITY:
+                    if (checkCollision(entityBox, otherBox)) {
+                        player.getWeaponInventory().equipWeapon((Weapon) other);
+                        return;
+                    }
+                    break;
 
+                case PICKUP_ENTITY:
+                    break;
             }
 
         }
 
-        /**
-         * If we made it this far, no collision has occurred and the entities velocity can remain
-         * as is and is scaled back to its normal value.
-         */
-        entity.getVelocity().scl(1 / delta);
+        if (checkCollision(otherBox, entityBox, entityContacts.get(ContactCache.entityPairKey(entity.getID(), other.getID())), scratch)) {
 
+            /**
+             * The resolution vector points from other towards entity. The solver pushes entity
+             * along it and other against it, weighted by their masses.
+             */
+            contactSolver.addContact(other, entity, resolutionVector.x, resolutionVector.y);
+
+        }
     }
 
 
@@ -195,8 +202,82 @@ public class CollisionController {
     //TODO: world collision does not have to be split by horizontal or vertical cd.
     //TODO: remove all aspects that have to do with a cd split by horizontal or vertical cd
     //TODO: because spatial hashing works!!! - not quite yet, noob :/
+
+    /**
+     * Resolves the world collisions of all living entities with enabled collision detection.
+     * @param entities all entities of the world
+     * @param delta    time which has passed since the last update frame
+     */
+    public void resolveWorldCollisions(EntityList entities, float delta) {
+        if (worldCollisionThreads > 1) {
+            resolveWorldCollisionsParallel(entities, delta);
+        } else {
+            for (int i = 0; i < entities.size(); i++) {
+                Entity e = entities.get(i);
+                if (!e.isAlive() || !e.getBody().isCollisionDetectionEnabled())
+                    continue;
+                resolveWorldCollisions(e, delta, scratch);
+            }
+        }
+        publishCounters(scratch);
+        updateContactCount();
+    }
+
+    /**
+     * Parallel version of resolveWorldCollisions(EntityList, float).
+     * The world collision of an entity only reads static tiles and writes its own body, so the
+     * entities are split into one chunk per thread, each resolved with the scratch of its chunk.
+     * An entity always lands in the chunk of its registry slot, so the split does not shift while
+     * the number of entities changes.
+     * Projectiles create popups and query the hash cells, so they are resolved afterwards on the
+     * calling thread, in the same order as in the serial path. Each entity ends up with the same
+     * result as in the serial path, no matter how many threads are used.
+     */
+    private void resolveWorldCollisionsParallel(EntityList entities, float delta) {
+        int chunks = worldCollisionTasks.length;
+        for (int k = 0; k < chunks; k++) {
+            worldCollisionTasks[k].bodies.clear();
+        }
+        worldProjectiles.clear();
+        for (int i = 0; i < entities.size(); i++) {
+            Entity e = entities.get(i);
+            if (!e.isAlive() || !e.getBody().isCollisionDetectionEnabled())
+                continue;
+            if (e.has(PROJECTILE))
+                worldProjectiles.add(e);
+            else
+                worldCollisionTasks[EntityRegistry.slotOf(e.getID()) % chunks].bodies.add(e);
+        }
+
+        for (int k = 0; k < chunks; k++) {
+            WorldCollisionTask task = worldCollisionTasks[k];
+            task.reinitialize();
+            task.delta = delta;
+        }
+        worldCollisionStage.reinitialize();
+        pool.invoke(worldCollisionStage);
+
+        for (int i = 0; i < worldProjectiles.size; i++) {
+            resolveWorldCollisions(worldProjectiles.get(i), delta, scratch);
+        }
+        for (int k = 0; k < chunks; k++) {
+            publishCounters(worldCollisionTasks[k].scratch);
+        }
+    }
+
     public void resolveWorldCollisions(Entity entity, float delta) {
+        resolveWorldCollisions(entity, delta, scratch);
+    }
+
+    /**
+     * Resolves the world collisions of a single entity.
+     * @param entity entity whose world collisions should be resolved
+     * @param delta  time which has passed since the last update frame
+     * @param s      scratch of the calling worker
+     */
+    private void resolveWorldCollisions(Entity entity, float delta, CollisionScratch s) {
 
+        Vector2 resolutionVector = s.resolutionVector;
 
         // reset resolutionVector to (0f,0f)
         resolutionVector.x = 0f;
@@ -205,28 +286,41 @@ public class CollisionController {
         entity.getBody().setCollidedWithWorld(false);
 
 
-        // USING NOW HASH DS
-        for (Tile tile : worldContainer.getTilesNearby(entity)) {
+        /**
+         * If the entity is a projectile, projectile/world collision has to be resolved.
+         * Projectiles still gather their tiles from the hash cells, as the continuous collision
+         * detection of fast bullets needs tiles ahead of the projectile, not only overlapped ones.
+         */
+        if (entity.has(PROJECTILE)) {
+            Array<Tile> tiles = worldContainer.getTilesNearby(entity, s.tiles);
+            for (int i = 0; i < tiles.size; i++) {
+                if (projectileCollisionDetection((Projectile) entity, tiles.get(i)))
+                    return;    // exit collision routine
+            }
+            resolutionVector.x = 0f;
+            resolutionVector.y = 0f;
+            entity.getVelocity().scl(1 / delta);
+            return;
+        }
 
+        /**
+         * Only the solid tiles actually overlapped by the entity are candidates for SAT. As they
+         * all overlap the bounds of the entity, there is nothing a cached axis could reject, so
+         * entity/tile pairs are not kept in a contact cache.
+         */
+        Array<Tile> tiles = worldContainer.getSolidTilesOverlapping(entity, s.tiles);
+        for (int i = 0; i < tiles.size; i++) {
+
+            Tile tile = tiles.get(i);
             CollisionBox entityCollisionBox = entity.getBounds();
             CollisionBox tileBox = tile.getCollisionBox();
-
-            /**
-             * If the entity is a projectile, projectile/world collision has to be resolved.
-             */
-            if (entity.getClass() == Projectile.class) {
-                if (projectileCollisionDetection((Projectile) entity, tile))
-                    return;    // exit collision routine
-                else
-                    continue; // continue with next tile
-            }
             /**
              * If a collision occurs between a solid world tile and the entity the corresponding entities
              * velocity component will be reset to 0 and the resolutionVector is added to the entities
              * position to resolve the conflict.
              * Also, an orthogonal impulse is created and added to the entities list of impulses.
              */
-            if (checkCollision(tileBox, entityCollisionBox) & !tile.isPassable()) {
+            if (checkCollision(tileBox, entityCollisionBox, s) & !tile.isPassable()) {
                 entity.getBody().setCollidedWithWorld(true);
                 if (!entity.equals(player)) {
                     entity.getBody().getImpulses().clear();
@@ -269,144 +363,182 @@ public class CollisionController {
     // COLLISION CHECK AND RESOLUTION BETWEEN 2 COLLISIONBOXES
     // ---------------------------------------------------------------------------------------------
 
+    /**
+     * Collision test warm started with the contact of the pair from the previous frames. The axis
+     * the last test ended on is tested first: if it separates both boxes, the pair is rejected
+     * without running the full test. Otherwise checkCollision() decides and the contact is updated
+     * with its result. Pairs of axis aligned boxes skip the cached axis, as their full test is
+     * cheaper than projecting both boxes onto it.
+     *
+     * @param aBox    collision box of object a
+     * @param bBox    collision box of object b
+     * @param contact cached contact of the pair
+     * @param s       scratch of the calling worker
+     * @return same as checkCollision(aBox, bBox, s)
+     */
+    private boolean checkCollision(CollisionBox aBox, CollisionBox bBox, ContactCache.Contact contact, CollisionScratch s) {
+        if (contact.hasAxis && !(aBox.isAxisAligned() && bBox.isAxisAligned())) {
+            getProjection(aBox, contact.axisX, contact.axisY, s.projectionA);
+            getProjection(bBox, contact.axisX, contact.axisY, s.projectionB);
+            if (!overlaps(s.projectionA, s.projectionB)) {
+                s.rejects++;
+                contact.set(contact.axisX, contact.axisY, 0f, true);
+                return false;
+            }
+        }
+
+        boolean collided = checkCollision(aBox, bBox, s);
+        contact.set(s.lastAxisX, s.lastAxisY, collided ? s.lastPenetration : 0f, !collided);
+        return collided;
+    }
+
+    private boolean checkCollision(CollisionBox aBox, CollisionBox bBox) {
+        return checkCollision(aBox, bBox, scratch);
+    }
+
     /**
      * Calculates the minimum translation vector needed two push two
      * actors away from each other to resolve a collision
      *
      * @param aBox collision box of object a
      * @param bBox collision box of object b
+     * @param s    scratch of the calling worker
      * @return false, when no collision was detected
-     * true, when an collision was detected. resolutionVector holds the information
-     * about how to resolve the collision.
+     * true, when an collision was detected. The resolution vector of the scratch holds the
+     * information about how to resolve the collision.
+     * In both cases lastAxisX/lastAxisY of the scratch hold the unit axis the test ended on, the
+     * separating axis or the axis of the resolution vector, and lastPenetration the overlap on it.
      */
 
-    private boolean checkCollision(CollisionBox aBox, CollisionBox bBox) {
-        calledPerFrame++;
+    private boolean checkCollision(CollisionBox aBox, CollisionBox bBox, CollisionScratch s) {
+        s.checks++;
+        if (aBox.isAxisAligned() && bBox.isAxisAligned())
+            return checkAxisAlignedCollision(aBox, bBox, s);
         /**
          * The minimal overlap is initialized with a very large value.
          */
         float minOverlap = Float.MAX_VALUE;
+        float axisX = 0f, axisY = 0f;
 
-        // Get normals of each shape
-        Array<Vector2> normalsA = aBox.getNormals();
-        Array<Vector2> normalsB = bBox.getNormals();
+        int normalsA = aBox.getVertexCount();
+        int normalsB = bBox.getVertexCount();
 
         /**
-         * Calculating the projection of both shapes onto the each of the normals of shape A.
-         * The projections are saved in intervals containing the min and max value of the projection.
+         * Calculating the projection of both shapes onto each of the normals of shape A, followed
+         * by the normals of shape B. The projections are saved in intervals containing the min and
+         * max value of the projection.
          */
-        for (Vector2 normalA : normalsA) {
+        for (int i = 0; i < normalsA + normalsB; i++) {
+
+            CollisionBox owner = i < normalsA ? aBox : bBox;
+            int n = i < normalsA ? i : i - normalsA;
+            float normalX = owner.getNormalX(n);
+            float normalY = owner.getNormalY(n);
 
-            Interval projectionA = getProjection(aBox, normalA);
-            Interval projectionB = getProjection(bBox, normalA);
+            getProjection(aBox, normalX, normalY, s.projectionA);
+            getProjection(bBox, normalX, normalY, s.projectionB);
 
             /**
              * Early exit #1: When there is no overlap between both projections, the separating axis
              * theorem states that there is no way a collision can still occur.
              */
-            if (!overlaps(projectionA, projectionB)) {
+            if (!overlaps(s.projectionA, s.projectionB)) {
+                s.setLastAxis(normalX, normalY, 0f);
                 return false;
-            } else {
-
-                // get the overlap of both projections
-                float overlap = getOverlap(projectionA, projectionB);
-                /**
-                 * Early exit #2: Both projections are touching, but no overlap is present. Hence no
-                 * real collision is occurring.
-                 */
-                if (overlap == 0f) {
-                    return false;
-                }
-
-                /**
-                 * A real overlap has occurred, the minimal overlap is updated and a resolution
-                 * vector is constructed.
-                 *
-                 */
-                if (Math.abs(overlap) < Math.abs(minOverlap)) {
-
-                    minOverlap = overlap;
-                    resolutionVector = new Vector2(normalA);
-                    Vector2 difference = sub(bBox.getPosition(), aBox.getPosition());
-
-                    /**
-                     * The orientation of the resolution vector is checked. If the dot product
-                     * between the relative vector between a and b and the resolution vector is < 0,
-                     * the resolution vector is pointing in the wrong direction.
-                     */
-                    // finally scaling the resolution vector
-                    resolutionVector.scl(minOverlap);
-                    if (dot(difference, resolutionVector) > 0.0f) {
-                        resolutionVector.x = -resolutionVector.x;
-                        resolutionVector.y = -resolutionVector.y;
-                    }
+            }
 
-                }
+            // get the overlap of both projections
+            float overlap = getOverlap(s.projectionA, s.projectionB);
+            /**
+             * Early exit #2: Both projections are touching, but no overlap is present. Hence no
+             * real collision is occurring.
+             */
+            if (overlap == 0f) {
+                s.setLastAxis(normalX, normalY, 0f);
+                return false;
+            }
 
+            // A real overlap has occurred, the minimal overlap and its axis are updated.
+            if (Math.abs(overlap) < Math.abs(minOverlap)) {
+                minOverlap = overlap;
+                axisX = normalX;
+                axisY = normalY;
             }
 
         }
 
+        // finally scaling the resolution vector
+        Vector2 resolutionVector = s.resolutionVector;
+        resolutionVector.set(axisX * minOverlap, axisY * minOverlap);
+        s.setLastAxis(axisX, axisY, minOverlap);
 
         /**
-         * Calculating the projection of both shapes onto the each of the normals of shape B.
-         * The projections are saved in intervals containing the min and max value of the projection.
+         * The orientation of the resolution vector is checked. If the dot product between the
+         * relative vector between a and b and the resolution vector is > 0, the resolution vector
+         * is pointing in the wrong direction.
          */
-        for (Vector2 normalB : normalsB) {
-
-            Interval projectionA = getProjection(aBox, normalB);
-            Interval projectionB = getProjection(bBox, normalB);
+        float differenceX = aBox.getPosition().x - bBox.getPosition().x;
+        float differenceY = aBox.getPosition().y - bBox.getPosition().y;
+        if (dot(differenceX, differenceY, resolutionVector.x, resolutionVector.y) > 0.0f) {
+            resolutionVector.x = -resolutionVector.x;
+            resolutionVector.y = -resolutionVector.y;
+        }
 
-            /**
-             * Early exit #1: When there is no overlap between both projections, the separating axis
-             * theorem states that there is no way a collision can still occur.
-             */
-            if (!overlaps(projectionA, projectionB)) {
-                return false;
-            } else {
-
-                // get the overlap of both projections
-                float overlap = getOverlap(projectionA, projectionB);
-                /**
-                 * Early exit #2: Both projections are touching, but no overlap is present. Hence no
-                 * real collision is occurring.
-                 */
-                if (overlap == 0f) {
-                    return false;
-                }
+        return true;
+    }
 
-                /**
-                 * A real overlap has occurred, the minimal overlap is updated and a resolution
-                 * vector is constructed.
-                 *
-                 */
-                if (Math.abs(overlap) < Math.abs(minOverlap)) {
-
-                    minOverlap = overlap;
-                    resolutionVector = new Vector2(normalB);
-                    Vector2 difference = sub(bBox.getPosition(), aBox.getPosition());
-
-                    /**
-                     * The orientation of the resolution vector is checked. If the dot product
-                     * between the relative vector between a and b and the resolution vector is < 0,
-                     * the resolution vector is pointing in the wrong direction.
-                     */
-                    // finally scaling the resolution vector
-                    resolutionVector.scl(minOverlap);
-                    if (dot(difference, resolutionVector) > 0.0f) {
-                        resolutionVector.x = -resolutionVector.x;
-                        resolutionVector.y = -resolutionVector.y;
-                    }
 
+    /**
+     * Collision test for two axis aligned boxes. Gives the same result as the separating axis test
+     * in checkCollision(), whose normals would only be the x and y axis here: the boxes collide if
+     * their intervals overlap on both axes, the resolution vector lies on the axis with the smaller
+     * overlap (x on a tie) and points from aBox towards bBox, decided by the box positions.
+     *
+     * @param aBox axis aligned collision box
+     * @param bBox axis aligned collision box
+     * @param s    scratch of the calling worker
+     * @return true, if the boxes overlap. The resolution vector is only changed in this case.
+     */
+    private boolean checkAxisAlignedCollision(CollisionBox aBox, CollisionBox bBox, CollisionScratch s) {
+        float aMinX = aBox.getMinX(), aMaxX = aBox.getMaxX();
+        float bMinX = bBox.getMinX(), bMaxX = bBox.getMaxX();
+        if (aMinX >= bMaxX || bMinX >= aMaxX) {
+            s.setLastAxis(1f, 0f, 0f);
+            return false;
+        }
 
-                }
+        float aMinY = aBox.getMinY(), aMaxY = aBox.getMaxY();
+        float bMinY = bBox.getMinY(), bMaxY = bBox.getMaxY();
+        if (aMinY >= bMaxY || bMinY >= aMaxY) {
+            s.setLastAxis(0f, 1f, 0f);
+            return false;
+        }
 
-            }
+        float overlapX = Math.min(aMaxX, bMaxX) - Math.max(aMinX, bMinX);
+        float overlapY = Math.min(aMaxY, bMaxY) - Math.max(aMinY, bMinY);
 
+        if (overlapY < overlapX) {
+            s.resolutionVector.set(0f, aBox.getPosition().y > bBox.getPosition().y ? -overlapY : overlapY);
+            s.setLastAxis(0f, 1f, overlapY);
+        } else {
+            s.resolutionVector.set(aBox.getPosition().x < bBox.getPosition().x ? overlapX : -overlapX, 0f);
+            s.setLastAxis(1f, 0f, overlapX);
         }
+        return true;
+    }
 
+    /**
+     * Adds the counters of a scratch to the per frame statistics and resets them.
+     */
+    private void publishCounters(CollisionScratch s) {
+        calledPerFrame += s.checks;
+        cachedRejects += s.rejects;
+        s.checks = 0;
+        s.rejects = 0;
+    }
 
-        return true;
+    private void updateContactCount() {
+        cachedContacts = entityContacts.size();
     }
 
 
@@ -442,6 +574,7 @@ public class CollisionController {
         Vector2 projectileVelo = p.getVelocity().cpy().scl(delta);
 
         projectileCollisionDetection(p, e, projectileVelo, entityVelo, delta);
+        publishCounters(scratch);
     }
 
     /**
@@ -459,7 +592,7 @@ public class CollisionController {
 
 
         //TODO: REMOVE THIS.
-        if (entity instanceof Weapon) {
+        if (entity.has(WEAPON_COMPONENT)) {
             Gdx.app.log("WEAPON", "COLLIDED WITH PROJECTILE");
         }
 
@@ -511,8 +644,7 @@ public class CollisionController {
                 }
             }
 
-            Message m = new Message(projectile.getPosition().cpy().toString(), projectile.getPosition().cpy(), entity.time, 3.00f);
-            PopUpRenderer.getInstance().addMessageToCategory(MISC, m);
+            addImpactMessage(projectile);
 
             /**
              * If the bounds/shadows of the projectile and the entity collide,
@@ -528,8 +660,7 @@ public class CollisionController {
             projectile.destroy();
             return true;
         } else if (checkCollision(projectile.getBounds(), entityBounds)) {
-            Message m = new Message(projectile.getPosition().cpy().toString(), projectile.getPosition().cpy(), entity.time, 3.00f);
-            PopUpRenderer.getInstance().addMessageToCategory(MISC, m);
+            addImpactMessage(projectile);
 
             projectile.setVelocity(0f, 0f);
             if (entity.has(HEALTH)) {
@@ -544,6 +675,16 @@ public class CollisionController {
         return false;
     }
 
+    /**
+     * Shows the impact position of a projectile as a popup. Only used in debug mode, as it builds
+     * a new string for every hit.
+     */
+    private void addImpactMessage(Projectile projectile) {
+        if (!AwesomeJumperMain.onDebugMode() || PopUpRenderer.getInstance() == null)
+            return;
+        PopUpRenderer.getInstance().addMessage(MISC, projectile.getPosition().toString(), projectile.getPosition().cpy(), 3.00f);
+    }
+
     // ---------------------------------------------------------------------------------------------
     // PROJECTILE / WORLD COLLISION
     // ---------------------------------------------------------------------------------------------
@@ -580,8 +721,7 @@ public class CollisionController {
                     return true;
                 }
             }
-            Message m = new Message(projectile.getPosition().cpy().toString(), projectile.getPosition().cpy(), projectile.time, 3.00f);
-            PopUpRenderer.getInstance().addMessageToCategory(MISC, m);
+            addImpactMessage(projectile);
             projectile.setVelocity(0f, 0f);
             projectile.destroy();
 
@@ -590,8 +730,7 @@ public class CollisionController {
         // SLOW BULLET
         else if (checkCollision(projectile.getBounds(), tile.getCollisionBox())) {
 
-            Message m = new Message(projectile.getPosition().cpy().toString(), projectile.getPosition().cpy(), projectile.time, 3.00f);
-            PopUpRenderer.getInstance().addMessageToCategory(MISC, m);
+            addImpactMessage(projectile);
 
             projectile.setVelocity(0f, 0f);
             projectile.destroy();
@@ -607,18 +746,25 @@ public class CollisionController {
 
     /**
      * Casts a projectile ray through the scene in three steps:
-     * 1) Gather an ordered list of hash cells the ray hits.
-     * 2) Gather all entities from those hash cells and sort them by distance from the rays origin
+     * 1) Gather an ordered list of hash cells the ray hits until it reaches a wall.
+     * 2) Gather all entities in front of the wall from the broad phase and sort them by distance
+     * from the rays origin
      * 3) Execute penetration tests against the list of entities gathered in step 2.
      * @param ray
      */
     public void projectileRayCast(final ProjectileRay ray) {
-        ArrayList<Vector2> spatialIndexes = generateCrossedIndexes(ray);
-        ArrayList<Entity> entitiesFromCells = worldContainer.gatherEntitiesFromCells(spatialIndexes);
+        /**
+         * Walk the grid until the ray hits a wall. The last penetration point is the end of the
+         * ray. The entity candidates in front of the wall are provided by the broad phase.
+         */
+        generateCrossedIndexes(ray);
+        ArrayList<Vector2> penetrations = ray.getPenetrations();
+        Vector2 rayEnd = penetrations.get(penetrations.size() - 1);
+        Array<Entity> rayEntities = worldContainer.getBroadphase().rayCast(ray.getOrigin(), rayEnd, rayCandidates);
 
 
         // Sort all entities in order of distance from the rays origin
-        Collections.sort(entitiesFromCells, new Comparator<Entity>() {
+        rayEntities.sort(new Comparator<Entity>() {
             @Override
             public int compare(Entity a, Entity b) {
                 float dst1 = a.getBody().getBounds().getCenter().dst(ray.getOrigin());
@@ -635,17 +781,17 @@ public class CollisionController {
 
         Utils.log("RAY START: ", ray.getOrigin());
         Utils.log("------HIT HASH CELLS------");
-        for(Vector2 i : ray.getHitHashCells()) {
-            Utils.log("INDEX: ", i);
+        for(int i = 0; i < ray.getHitHashCells().size; i++) {
+            Utils.log("INDEX: ", ray.getHitHashCells().get(i));
         }
 
         Utils.log("-------ENTITIES SORTED BY DISTANCE------");
-        for(Entity e: entitiesFromCells) {
+        for(Entity e: rayEntities) {
             Utils.log("ENTITY: (DST =" + e.getBody().getBounds().getCenter().dst(ray.getOrigin())
                     + ")", e.toString());
         }
 
-        penetrateEntities(ray,entitiesFromCells);
+        penetrateEntities(ray,rayEntities);
     }
 
 
@@ -655,12 +801,12 @@ public class CollisionController {
      * This is important to later calculate damage induced by rays.
      * @return
      */
-    public ArrayList<Vector2> generateCrossedIndexes(Ray ray) {
+    public IntArray generateCrossedIndexes(Ray ray) {
 
-        Vector2 startCell = worldContainer.getSpatialIndex(ray.getOrigin());
-        Vector2 currentCell = startCell;
+        int currentX = worldContainer.getCellX(ray.getOrigin().x);
+        int currentY = worldContainer.getCellY(ray.getOrigin().y);
 
-        ArrayList<Vector2> rayHashCells = ray.getHitHashCells();
+        IntArray rayHashCells = ray.getHitHashCells();
         ArrayList<Vector2> rayPenetrations = ray.getPenetrations();
 
         float deltaX = ray.getDir().x;
@@ -670,7 +816,7 @@ public class CollisionController {
         int signX = deltaX > 0 ? 1 : -1;
         int signY = deltaY > 0 ? 1 : -1;
 
-        rayHashCells.add(startCell);
+        rayHashCells.add(worldContainer.getCellIndex(currentX, currentY));
         rayPenetrations.add(ray.getOrigin());
 
         boolean foundWall = false;
@@ -681,7 +827,7 @@ public class CollisionController {
          */
         Utils.log("START OF RAYCASTING!");
 
-        while (!foundWall && worldContainer.isValid(currentCell)) {
+        while (!foundWall && worldContainer.isValidCell(currentX, currentY)) {
 
             HashSet<Ray> rays = new HashSet<>();
             List<Ray.Intersection> intersections = new ArrayList<>();
@@ -693,49 +839,42 @@ public class CollisionController {
 
             ray = new Ray(lastPenetrationX, lastPenetrationY, deltaX, deltaY, Ray.INFINITE);
 
-            Utils.log("-------CURRENT CELL--------", currentCell.toString());
+            Utils.log("-------CURRENT CELL--------", Utils.printVec(currentX, currentY));
             Utils.log("RAY START:", ray.toString());
-            HashSet<Tile> tiles = worldContainer.getTilesForCell(currentCell);
+            List<Tile> tiles = worldContainer.getTilesForCell(currentX, currentY);
 
             //TODO: add something like: if(aim.penetrationpower <= 0): break
             //TODO: if the ray has no punch left, break this loop early.
 
-            rays.clear();
-
-
             // -------------------------------------------------------------------------------------
             // TILE / RAY COLLISION DETECTION
             // -------------------------------------------------------------------------------------
 
-            Utils.log("CURRENT CELL", currentCell);
+            Utils.log("CURRENT CELL", Utils.printVec(currentX, currentY));
             Utils.log("START OF TILE RAY CASTING");
             Utils.log("TILES SIZE", tiles.size());
 
+            float closestDistance = Ray.NO_INTERSECTION;
             for (Tile t : tiles) {
                 Utils.log("", "-------------TILE------------:" + t.toString());
-                rays.addAll(t.getCollisionBox().getRays());
-            }
-
-            Utils.log("RAYS SIZE (SHOULD BE MULTIPLE OF 4)", rays.size());
-
-            if (rays.size() > 0) {
-                HashSet<Ray.Intersection> tileIntersections = getIntersections(ray, rays);
-                Utils.log("GENERATED INTERSECTIONS", tileIntersections.toString());
-                if (tileIntersections.size() > 0) {
-                    Ray.Intersection closestIntersection = Collections.min(tileIntersections);
-                    Utils.log("CLOSEST INTERSECTION FOR TILE", closestIntersection.toString());
-                    rayPenetrations.add(closestIntersection.result);
-                    break;
+                float distance = ray.getClosestIntersection(t.getCollisionBox(), intersectionPoint);
+                if (distance != Ray.NO_INTERSECTION && (closestDistance == Ray.NO_INTERSECTION || distance < closestDistance)) {
+                    closestDistance = distance;
+                    closestIntersectionPoint.set(intersectionPoint);
                 }
+            }
 
+            if (closestDistance != Ray.NO_INTERSECTION) {
+                Utils.log("CLOSEST INTERSECTION FOR TILE", Utils.printVec(closestIntersectionPoint) + " DST: " + closestDistance);
+                rayPenetrations.add(new Vector2(closestIntersectionPoint));
+                break;
             }
             else {
-                Utils.log("NO TILE INTERSECTION FOR: " + currentCell);
+                Utils.log("NO TILE INTERSECTION FOR: " + Utils.printVec(currentX, currentY));
             }
 
             Vector2 lastPen = rayPenetrations.get(rayPenetrations.size()-1);
             ray = new Ray(lastPen.x,lastPen.y, deltaX, deltaY, Ray.INFINITE);
-            rays.clear();
 
 
             // -------------------------------------------------------------------------------------
@@ -743,17 +882,22 @@ public class CollisionController {
             // -------------------------------------------------------------------------------------
 
 
-            // Get the indices for the next hashing cells adjacent to the current one with regards
-            // to the ray direction.
-            // length = 2 (spatial_hash_grid_size), dir = (1,0)
-            Vector2 nextXCell = worldContainer.getSpatialIndex(currentCell.x + signX * SPATIAL_HASH_GRID_SIZE, currentCell.y);
-            // length = 2 (spatial_hash_grid_size), dir = (0,1)
-            Vector2 nextYCell = worldContainer.getSpatialIndex(currentCell.x, currentCell.y + signY * SPATIAL_HASH_GRID_SIZE);
+            // Get the cell coordinates for the next hashing cells adjacent to the current one with
+            // regards to the ray direction.
+            // dir = (1,0)
+            int nextXCellX = currentX + signX;
+            // dir = (0,1)
+            int nextYCellY = currentY + signY;
+
+            // World coordinates of the lower left corners of the current and the adjacent cells
+            int gridSize = worldContainer.getSpatialFactor();
+            float cellOriginX = currentX * gridSize;
+            float cellOriginY = currentY * gridSize;
 
 
             Utils.log("-----------HASH CELL CD START----------");
-            Utils.log("NEXT X CELL: ", nextXCell);
-            Utils.log("NEXT Y CELL: ", nextYCell);
+            Utils.log("NEXT X CELL: ", Utils.printVec(nextXCellX, currentY));
+            Utils.log("NEXT Y CELL: ", Utils.printVec(currentX, nextYCellY));
 
             /*
              * Creating rays from the current hash cell:
@@ -762,11 +906,11 @@ public class CollisionController {
              * One for the x axis of the next cell in y direction.
              * One for the y axis of the next cell in x direction.
              */
-            Ray currentXAxis = new Ray(currentCell.x, currentCell.y, 1, 0, Ray.INFINITE);
-            Ray currentYAxis = new Ray(currentCell.x, currentCell.y, 0, 1, Ray.INFINITE);
+            Ray currentXAxis = new Ray(cellOriginX, cellOriginY, 1, 0, Ray.INFINITE);
+            Ray currentYAxis = new Ray(cellOriginX, cellOriginY, 0, 1, Ray.INFINITE);
 
-            Ray nextYCellXAxis = new Ray(nextYCell.x, nextYCell.y, 1, 0, Ray.INFINITE);
-            Ray nextXCellYAxis = new Ray(nextXCell.x, nextXCell.y, 0, 1, Ray.INFINITE);
+            Ray nextYCellXAxis = new Ray(cellOriginX, nextYCellY * gridSize, 1, 0, Ray.INFINITE);
+            Ray nextXCellYAxis = new Ray(nextXCellX * gridSize, cellOriginY, 0, 1, Ray.INFINITE);
 
 
             /*
@@ -807,14 +951,16 @@ public class CollisionController {
 
 
                 if (closestHashCellIntersection.origin == currentXAxis || closestHashCellIntersection.origin == nextYCellXAxis) {
-                    if(!rayHashCells.contains(nextYCell) && worldContainer.isValid(nextYCell)) {
+                    int nextYCell = worldContainer.getCellIndex(currentX, nextYCellY);
+                    if(worldContainer.isValidCell(currentX, nextYCellY) && !rayHashCells.contains(nextYCell)) {
                         rayHashCells.add(nextYCell);
-                        currentCell = nextYCell;
+                        currentY = nextYCellY;
                     }
                 } else if (closestHashCellIntersection.origin == currentYAxis || closestHashCellIntersection.origin == nextXCellYAxis) {
-                    if(!rayHashCells.contains(nextXCell) && worldContainer.isValid(nextXCell)) {
+                    int nextXCell = worldContainer.getCellIndex(nextXCellX, currentY);
+                    if(worldContainer.isValidCell(nextXCellX, currentY) && !rayHashCells.contains(nextXCell)) {
                         rayHashCells.add(nextXCell);
-                        currentCell = nextXCell;
+                        currentX = nextXCellX;
                     }
                 }
 
@@ -837,34 +983,26 @@ public class CollisionController {
      * @param entities Set of entities previously calculated in
      * @link getHitHashCells()
      */
-    private void penetrateEntities(ProjectileRay ray, ArrayList<Entity> entities) {
+    private void penetrateEntities(ProjectileRay ray, Array<Entity> entities) {
 
-        for(Entity e : entities) {
+        for(int index = 0; index < entities.size; index++) {
+            Entity e = entities.get(index);
 
-            HashSet<Ray> hitboxRays = new HashSet<>();
-            // If the current entity does not support collision, skip it.
-            if(!e.getBody().isCollisionDetectionEnabled())
+            // If the current entity is dead or does not support collision, skip it.
+            if(!e.isAlive() || !e.getBody().isCollisionDetectionEnabled())
                 continue;
-            // Gather all rays from the hitbox of the entity
-            hitboxRays.addAll(e.getBounds().getRays());
-
-            // If there are hit box rays present, calculate intersections.
-            if(!hitboxRays.isEmpty()) {
-                HashSet<Ray.Intersection> intersections = getIntersections(ray, hitboxRays);
-                if(!intersections.isEmpty()) {
-                    // Get the minimum intersection and add the penetration point to all relevant
-                    // collections.
-                    Ray.Intersection i = Collections.min(intersections);
-                    Vector2 point = i.result.cpy();
-                    ray.getPenetrations().add(point);
-                    ray.getPenetratedEntities().put(e.getID(),point);
-                    if(e.has(HEALTH) && ray.getRemainingPower() > 0) {
-                        int damage = ray.dealDamage(e.getBounds(), e.getBody());
-                        if(damage > 0)
-                            e.getHealth().takeDamage(damage);
-                    }
-                }
 
+            // Intersect the ray with the edges of the hitbox of the entity
+            if(ray.getClosestIntersection(e.getBounds(), intersectionPoint) != Ray.NO_INTERSECTION) {
+                // Add the closest penetration point to all relevant collections.
+                Vector2 point = intersectionPoint.cpy();
+                ray.getPenetrations().add(point);
+                ray.getPenetratedEntities().put(e.getID(),point);
+                if(e.has(HEALTH) && ray.getRemainingPower() > 0) {
+                    int damage = ray.dealDamage(e.getBounds(), e.getBody());
+                    if(damage > 0)
+                        e.getHealth().takeDamage(damage);
+                }
             }
         }
 
@@ -877,30 +1015,81 @@ public class CollisionController {
     }
 
 
+    //TODO: change this.
+    public void setPlayer() {
+        this.player = worldContainer.getPlayer();
+    }
+
     /**
-     * Generates all intersection objects for a given reference ray against a set of other test rays.
-     * Can be used to get the intersections of an aim ray against the rays of a collision box.
-     * @param otherRays Set containing rays.
-     * @param reference Reference ray that should collide with the set of other rays.
-     * @return
+     * Sets the number of threads the world collisions are resolved with. With one thread the
+     * serial path is used and no pool is kept. Contacts cached by the previous workers are lost.
      */
+    public void setWorldCollisionThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("THE NUMBER OF WORLD COLLISION THREADS MUST BE AT LEAST 1");
+        dispose();
+        worldCollisionThreads = threads;
+        worldCollisionTasks = new WorldCollisionTask[threads > 1 ? threads : 0];
+        for (int k = 0; k < worldCollisionTasks.length; k++) {
+            worldCollisionTasks[k] = new WorldCollisionTask();
+        }
+        if (threads > 1)
+            pool = new ForkJoinPool(threads);
+    }
 
-    public HashSet<Ray.Intersection> getIntersections(Ray reference, HashSet<Ray>otherRays) {
+    /**
+     * Shuts down the threads of the parallel world collision stage.
+     */
+    public void dispose() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    public int getWorldCollisionThreads() {
+        return worldCollisionThreads;
+    }
+
+    /**
+     * Sets the number of iterations the contact solver runs over the entity/entity contacts.
+     */
+    public void setSolverIterations(int iterations) {
+        contactSolver.setIterations(iterations);
+    }
+
+    public int getSolverIterations() {
+        return contactSolver.getIterations();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // PARALLEL WORLD COLLISION TASKS
+    // ---------------------------------------------------------------------------------------------
 
-        HashSet<Ray.Intersection> intersections = new HashSet<>();
-        for(Ray other : otherRays) {
-            Ray.Intersection i = reference.getIntersection(other);
-            // If the intersection object says, that an intersecton occurs, the current intersection
-            // is added to the result set.
-            if(i.intersect)
-                intersections.add(i);
+    /**
+     * Resolves the world collisions of one chunk of entities with its own scratch.
+     */
+    private class WorldCollisionTask extends RecursiveAction {
+        final CollisionScratch scratch = new CollisionScratch();
+        final Array<Entity> bodies = new Array<>(false, 32);
+        float delta;
+
+        @Override
+        protected void compute() {
+            for (int i = 0; i < bodies.size; i++) {
+                resolveWorldCollisions(bodies.get(i), delta, scratch);
+            }
         }
-        return intersections;
     }
 
-    //TODO: change this.
-    public void setPlayer() {
-        this.player = worldContainer.getPlayer();
+    /**
+     * Forks all chunk tasks and waits for them to finish.
+     */
+    private class WorldCollisionStage extends RecursiveAction {
+        @Override
+        protected void compute() {
+            invokeAll(worldCollisionTasks);
+        }
     }
 
 
@@ -0,0 +1,40 @@
+package com.trent.awesomejumper.controller.collision;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.trent.awesomejumper.tiles.Tile;
+import com.trent.awesomejumper.utils.Interval;
+
+/**
+ * Mutable state of one narrow phase worker: the resolution vector and projections of the
+ * separating axis test, the axis the last test ended on, the tile candidate buffer and its
+ * counters.
+ * The serial path of the CollisionController uses one instance, the parallel world collision stage
+ * one per chunk of entities, so no two threads ever write the same scratch.
+ */
+class CollisionScratch {
+
+    // MEMBERS & INSTANCES
+    // ---------------------------------------------------------------------------------------------
+
+    final Vector2 resolutionVector = new Vector2(0f, 0f);
+    final Interval projectionA = new Interval(0f, 0f);
+    final Interval projectionB = new Interval(0f, 0f);
+
+    // Axis and penetration the last collision test ended on
+    float lastAxisX, lastAxisY, lastPenetration;
+
+    final Array<Tile> tiles = new Array<>(false, 16);
+
+    // Collision tests and cached rejects since the counters were last published
+    int checks, rejects;
+
+    // METHODS & FUNCTIONS
+    // ---------------------------------------------------------------------------------------------
+
+    void setLastAxis(float axisX, float axisY, float penetration) {
+        lastAxisX = axisX;
+        lastAxisY = axisY;
+        lastPenetration = penetration;
+    }
+}
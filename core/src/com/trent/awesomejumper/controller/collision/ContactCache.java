@@ -0,0 +1,139 @@
+package com.trent.awesomejumper.controller.collision;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.LongMap;
+import com.badlogic.gdx.utils.Pool;
+
+/**
+ * Contacts of the collision pairs tested in the previous frames, keyed by pair.
+ * A contact keeps the axis the last test of its pair ended on: the separating axis if the boxes
+ * did not collide, the axis of the resolution vector and the penetration depth if they did.
+ * Pairs touched by a test are stamped with the current frame, all other pairs are dropped by
+ * {@link #removeStale()}, so only pairs reported by the broad phase in consecutive frames survive.
+ * The live contacts are also kept in a packed array, so the stale sweep only walks live contacts
+ * and not the whole backing table of the map.
+ */
+public class ContactCache {
+
+    // MEMBERS & INSTANCES
+    // ---------------------------------------------------------------------------------------------
+
+    private final LongMap<Contact> contacts = new LongMap<>(128);
+    private final Pool<Contact> contactPool = new Pool<Contact>(128) {
+        @Override
+        protected Contact newObject() {
+            return new Contact();
+        }
+    };
+    private final Array<Contact> liveContacts = new Array<>(false, 128, Contact.class);
+    private int frame = 0;
+
+    // METHODS & FUNCTIONS
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Key of a pair of entities. The key does not depend on the order of the two IDs.
+     */
+    public static long entityPairKey(int idA, int idB) {
+        int low = Math.min(idA, idB);
+        int high = Math.max(idA, idB);
+        return ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Starts a new frame. Contacts not requested with {@link #get(long)} from now on are stale.
+     */
+    public void beginFrame() {
+        frame++;
+    }
+
+    /**
+     * Returns the contact of a pair and marks it as alive in the current frame. Pairs without a
+     * contact get a new one, which has no axis yet.
+     */
+    public Contact get(long key) {
+        Contact contact = contacts.get(key);
+        if (contact == null) {
+            contact = contactPool.obtain();
+            contact.key = key;
+            contacts.put(key, contact);
+            liveContacts.add(contact);
+        }
+        contact.frame = frame;
+        return contact;
+    }
+
+    /**
+     * Drops the contacts of all pairs which were not requested since the last beginFrame().
+     */
+    public void removeStale() {
+        Contact[] items = liveContacts.items;
+        int live = 0;
+        for (int i = 0; i < liveContacts.size; i++) {
+            Contact contact = items[i];
+            if (contact.frame != frame) {
+                contacts.remove(contact.key);
+                contactPool.free(contact);
+            } else {
+                items[live++] = contact;
+            }
+        }
+        liveContacts.truncate(live);
+    }
+
+    public void clear() {
+        for (int i = 0; i < liveContacts.size; i++) {
+            contactPool.free(liveContacts.get(i));
+        }
+        liveContacts.clear();
+        contacts.clear();
+    }
+
+    public int size() {
+        return liveContacts.size;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // CONTACT
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Result of the last collision test of a pair.
+     */
+    public static class Contact implements Pool.Poolable {
+
+        float axisX, axisY;         // unit axis the last test ended on
+        float penetration;          // penetration depth along the axis, 0 if separated
+        boolean hasAxis;            // false for new contacts
+        boolean separated;          // true if the axis separated the pair
+        int frame;                  // last frame the pair was tested in
+        long key;                   // key of the pair in the cache
+
+        void set(float axisX, float axisY, float penetration, boolean separated) {
+            this.axisX = axisX;
+            this.axisY = axisY;
+            this.penetration = penetration;
+            this.separated = separated;
+            this.hasAxis = true;
+        }
+
+        public float getPenetration() {
+            return penetration;
+        }
+
+        public boolean isSeparated() {
+            return separated;
+        }
+
+        @Override
+        public void reset() {
+            axisX = 0f;
+            axisY = 0f;
+            penetration = 0f;
+            hasAxis = false;
+            separated = false;
+            frame = 0;
+            key = 0L;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.trent.awesomejumper.controller.collision;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.trent.awesomejumper.engine.entity.Entity;
+import com.trent.awesomejumper.engine.modelcomponents.Body;
+
+import java.util.Arrays;
+
+import static com.trent.awesomejumper.utils.PhysicalConstants.FRICTIONAL_COEFFICIENT;
+
+/**
+ * Sequential impulse solver for the entity/entity contacts of a frame.
+ * All contacts are gathered first with {@link #addContact(Entity, Entity, float, float)}. Then
+ * {@link #solve()} runs a fixed number of iterations over the contact list, each of them pushing
+ * the bodies of a contact apart along its normal and applying friction along its tangent. The
+ * accumulated impulse of a contact is clamped, so a contact can only push, never pull.
+ * Afterwards the solved velocity and the position correction of every body are written directly
+ * to the entity.
+ * Bodies which collided with the world in this frame or have no mass are not moved. A body pushed
+ * against a body which collided with the world is marked as collided with the world as well.
+ * Bodies and contacts are stored in packed arrays which are reused every frame, so the cost is
+ * fixed per contact and iteration and no objects are created while solving.
+ */
+public class ContactSolver {
+
+    // MEMBERS & INSTANCES
+    // ---------------------------------------------------------------------------------------------
+
+    public static final int DEFAULT_ITERATIONS = 6;
+
+    private static final float POSITION_CORRECTION = 0.8f;    // share of the penetration removed per frame
+    private static final float PENETRATION_SLOP = 0.005f;     // penetration left to keep resting contacts
+    private static final float RESTITUTION_THRESHOLD = 0.5f;  // minimum approach speed to bounce off
+
+    private int iterations = DEFAULT_ITERATIONS;
+
+    // BODIES
+    private final Array<Entity> bodies = new Array<>(false, 64);
+    private final IntIntMap bodyIndexes = new IntIntMap(64);    // entity ID -> body index
+    private float[] velocities = new float[128];                // solved velocity (x,y)
+    private float[] startVelocities = new float[128];           // velocity before solving (x,y)
+    private float[] corrections = new float[128];               // accumulated position correction (x,y)
+    private float[] inverseMasses = new float[64];
+    private boolean[] anchored = new boolean[64];                // collided with the world before solving
+
+    // CONTACTS
+    private int contactCount = 0;
+    private int[] contactBodies = new int[128];                 // body index of a and b
+    private float[] normals = new float[128];                   // unit normal from a towards b (x,y)
+    private float[] penetrations = new float[64];
+    private float[] restitutionBiases = new float[64];          // target separating speed
+    private float[] normalImpulses = new float[64];             // accumulated normal impulse
+    private float[] tangentImpulses = new float[64];            // accumulated friction impulse
+
+    // METHODS & FUNCTIONS
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes the contacts and bodies of the previous solve.
+     */
+    public void begin() {
+        bodies.clear();
+        bodyIndexes.clear();
+        contactCount = 0;
+    }
+
+    /**
+     * Adds a contact between two entities.
+     * @param a                  first entity
+     * @param b                  second entity, a is pushed by -resolution, b by +resolution
+     * @param resolutionX        x component of the vector separating both entities
+     * @param resolutionY        y component of the vector separating both entities
+     */
+    public void addContact(Entity a, Entity b, float resolutionX, float resolutionY) {
+        float penetration = (float) Math.sqrt(resolutionX * resolutionX + resolutionY * resolutionY);
+        if (penetration == 0f)
+            return;
+
+        int c = contactCount++;
+        ensureContactCapacity(contactCount);
+        int indexA = addBody(a);
+        int indexB = addBody(b);
+        contactBodies[2 * c] = indexA;
+        contactBodies[2 * c + 1] = indexB;
+        normals[2 * c] = resolutionX / penetration;
+        normals[2 * c + 1] = resolutionY / penetration;
+        penetrations[c] = penetration;
+        normalImpulses[c] = 0f;
+        tangentImpulses[c] = 0f;
+
+        /**
+         * Bodies approaching faster than the threshold bounce off with the larger elasticity of
+         * both, slower ones come to rest.
+         */
+        float approach = relativeVelocity(c, normals[2 * c], normals[2 * c + 1]);
+        float elasticity = Math.max(a.getBody().getElasticity(), b.getBody().getElasticity());
+        restitutionBiases[c] = approach < -RESTITUTION_THRESHOLD ? -elasticity * approach : 0f;
+    }
+
+    /**
+     * Solves all contacts added since begin() and applies the results to the bodies.
+     */
+    public void solve() {
+        if (contactCount == 0)
+            return;
+
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            for (int c = 0; c < contactCount; c++) {
+                solveContact(c);
+            }
+        }
+
+        for (int c = 0; c < contactCount; c++) {
+            addPositionCorrection(c);
+        }
+
+        for (int i = 0; i < bodies.size; i++) {
+            Entity entity = bodies.get(i);
+            entity.getVelocity().add(velocities[2 * i] - startVelocities[2 * i],
+                    velocities[2 * i + 1] - startVelocities[2 * i + 1]);
+            entity.getPosition().add(corrections[2 * i], corrections[2 * i + 1]);
+        }
+
+        for (int c = 0; c < contactCount; c++) {
+            int indexA = contactBodies[2 * c];
+            int indexB = contactBodies[2 * c + 1];
+            if (anchored[indexA] != anchored[indexB])
+                bodies.get(anchored[indexA] ? indexB : indexA).getBody().setCollidedWithWorld(true);
+        }
+    }
+
+    /**
+     * One iteration of a single contact: normal impulse first, then friction bounded by it.
+     */
+    private void solveContact(int c) {
+        int indexA = contactBodies[2 * c];
+        int indexB = contactBodies[2 * c + 1];
+        float inverseMassSum = inverseMasses[indexA] + inverseMasses[indexB];
+        if (inverseMassSum == 0f)
+            return;
+
+        float normalX = normals[2 * c];
+        float normalY = normals[2 * c + 1];
+
+        // NORMAL
+        float lambda = (restitutionBiases[c] - relativeVelocity(c, normalX, normalY)) / inverseMassSum;
+        float accumulated = Math.max(normalImpulses[c] + lambda, 0f);
+        lambda = accumulated - normalImpulses[c];
+        normalImpulses[c] = accumulated;
+        applyImpulse(indexA, indexB, normalX * lambda, normalY * lambda);
+
+        // FRICTION
+        float tangentX = -normalY;
+        float tangentY = normalX;
+        lambda = -relativeVelocity(c, tangentX, tangentY) / inverseMassSum;
+        float maxFriction = FRICTIONAL_COEFFICIENT * normalImpulses[c];
+        accumulated = Math.max(-maxFriction, Math.min(tangentImpulses[c] + lambda, maxFriction));
+        lambda = accumulated - tangentImpulses[c];
+        tangentImpulses[c] = accumulated;
+        applyImpulse(indexA, indexB, tangentX * lambda, tangentY * lambda);
+    }
+
+    /**
+     * Splits the penetration beyond the slop between both bodies of a contact by inverse mass.
+     */
+    private void addPositionCorrection(int c) {
+        int indexA = contactBodies[2 * c];
+        int indexB = contactBodies[2 * c + 1];
+        float inverseMassSum = inverseMasses[indexA] + inverseMasses[indexB];
+        float depth = penetrations[c] - PENETRATION_SLOP;
+        if (inverseMassSum == 0f || depth <= 0f)
+            return;
+
+        float magnitude = depth * POSITION_CORRECTION / inverseMassSum;
+        float correctionX = normals[2 * c] * magnitude;
+        float correctionY = normals[2 * c + 1] * magnitude;
+        corrections[2 * indexA] -= correctionX * inverseMasses[indexA];
+        corrections[2 * indexA + 1] -= correctionY * inverseMasses[indexA];
+        corrections[2 * indexB] += correctionX * inverseMasses[indexB];
+        corrections[2 * indexB + 1] += correctionY * inverseMasses[indexB];
+    }
+
+    /**
+     * Velocity of b relative to a along an axis. Negative if the bodies approach along the normal.
+     */
+    private float relativeVelocity(int c, float axisX, float axisY) {
+        int indexA = contactBodies[2 * c];
+        int indexB = contactBodies[2 * c + 1];
+        return (velocities[2 * indexB] - velocities[2 * indexA]) * axisX
+                + (velocities[2 * indexB + 1] - velocities[2 * indexA + 1]) * axisY;
+    }
+
+    private void applyImpulse(int indexA, int indexB, float impulseX, float impulseY) {
+        velocities[2 * indexA] -= impulseX * inverseMasses[indexA];
+        velocities[2 * indexA + 1] -= impulseY * inverseMasses[indexA];
+        velocities[2 * indexB] += impulseX * inverseMasses[indexB];
+        velocities[2 * indexB + 1] += impulseY * inverseMasses[indexB];
+    }
+
+    /**
+     * Returns the index of the body of an entity, adds it if it is not part of the solve yet.
+     */
+    private int addBody(Entity entity) {
+        int index = bodyIndexes.get(entity.getID(), -1);
+        if (index != -1)
+            return index;
+
+        index = bodies.size;
+        bodies.add(entity);
+        bodyIndexes.put(entity.getID(), index);
+        ensureBodyCapacity(bodies.size);
+
+        Body body = entity.getBody();
+        velocities[2 * index] = startVelocities[2 * index] = entity.getVelocity().x;
+        velocities[2 * index + 1] = startVelocities[2 * index + 1] = entity.getVelocity().y;
+        corrections[2 * index] = 0f;
+        corrections[2 * index + 1] = 0f;
+        anchored[index] = body.isCollidedWithWorld();
+        inverseMasses[index] = anchored[index] || body.getMass() <= 0f ? 0f : 1f / body.getMass();
+        return index;
+    }
+
+    private void ensureBodyCapacity(int count) {
+        if (inverseMasses.length >= count)
+            return;
+        int capacity = Math.max(count, inverseMasses.length * 2);
+        velocities = Arrays.copyOf(velocities, 2 * capacity);
+        startVelocities = Arrays.copyOf(startVelocities, 2 * capacity);
+        corrections = Arrays.copyOf(corrections, 2 * capacity);
+        inverseMasses = Arrays.copyOf(inverseMasses, capacity);
+        anchored = Arrays.copyOf(anchored, capacity);
+    }
+
+    private void ensureContactCapacity(int count) {
+        if (penetrations.length >= count)
+            return;
+        int capacity = Math.max(count, penetrations.length * 2);
+        contactBodies = Arrays.copyOf(contactBodies, 2 * capacity);
+        normals = Arrays.copyOf(normals, 2 * capacity);
+        penetrations = Arrays.copyOf(penetrations, capacity);
+        restitutionBiases = Arrays.copyOf(restitutionBiases, capacity);
+        normalImpulses = Arrays.copyOf(normalImpulses, capacity);
+        tangentImpulses = Arrays.copyOf(tangentImpulses, capacity);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // GETTER & SETTER
+    // ---------------------------------------------------------------------------------------------
+
+    public void setIterations(int iterations) {
+        if (iterations < 1)
+            throw new IllegalArgumentException("THE SOLVER NEEDS AT LEAST ONE ITERATION");
+        this.iterations = iterations;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public int getContactCount() {
+        return contactCount;
+    }
+}
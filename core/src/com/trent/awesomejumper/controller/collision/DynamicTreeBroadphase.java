@@ -0,0 +1,537 @@
+package com.trent.awesomejumper.controller.collision;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.trent.awesomejumper.engine.entity.Entity;
+import com.trent.awesomejumper.engine.modelcomponents.Body;
+import com.trent.awesomejumper.engine.physics.CollisionBox;
+
+import java.util.Arrays;
+
+import static com.trent.awesomejumper.engine.modelcomponents.ModelComponent.ComponentID.BODY;
+import static com.trent.awesomejumper.utils.Utils.getSegmentEntry;
+
+/**
+ * Broad phase based on a dynamic bounding volume tree.
+ * Every entity is stored in a leaf holding a fattened version of its bounds. Inner nodes hold
+ * the union of the bounds of their children. As long as the bounds of an entity stay inside its
+ * fat bounds, moving it does not touch the tree at all. Otherwise the leaf is removed and
+ * inserted again next to the sibling that grows the tree the least. The tree is kept balanced
+ * with rotations, so queries only descend into the branches overlapping the query region,
+ * regardless of how large or small the entities are.
+ * Nodes are stored in parallel arrays and recycled through a free list. The node id of a leaf is
+ * the proxy id stored in the body of the entity.
+ */
+public class DynamicTreeBroadphase implements Broadphase {
+
+    /**
+     * Reports an entity hit by a ray cast.
+     */
+    public interface RayCastCallback {
+        /**
+         * @param entity      entity whose fat bounds are crossed by the ray
+         * @param fraction    fraction of the ray at which the fat bounds are entered
+         * @param maxFraction current length of the ray as a fraction
+         * @return 0 to end the ray cast, a value smaller than maxFraction to clip the ray,
+         * maxFraction to continue
+         */
+        float reportEntity(Entity entity, float fraction, float maxFraction);
+    }
+
+    // MEMBERS & INSTANCES
+    // ---------------------------------------------------------------------------------------------
+
+    private static final int NULL_NODE = -1;
+    private static final int INITIAL_CAPACITY = 64;
+    public static final float AABB_MARGIN = 0.2f;     // fattening of the leaf bounds in world units
+
+    // Node data
+    private float[] minX, minY, maxX, maxY;
+    private int[] parent;                             // parent node, next free node for free nodes
+    private int[] child1, child2;                     // NULL_NODE for leaves
+    private int[] height;                             // 0 for leaves, -1 for free nodes
+    private Entity[] entities;                        // entity of a leaf
+
+    private int root = NULL_NODE;
+    private int freeList = NULL_NODE;
+    private int nodeCapacity = 0;
+
+    // Traversal stack and ray cast helpers
+    private IntArray stack = new IntArray(64);
+    private Array<Entity> raySink;
+    private final RayCastCallback sinkCallback = new RayCastCallback() {
+        @Override
+        public float reportEntity(Entity entity, float fraction, float maxFraction) {
+            raySink.add(entity);
+            return maxFraction;
+        }
+    };
+
+    // CONSTRUCTOR
+    // ---------------------------------------------------------------------------------------------
+
+    public DynamicTreeBroadphase() {
+        minX = new float[0];
+        minY = new float[0];
+        maxX = new float[0];
+        maxY = new float[0];
+        parent = new int[0];
+        child1 = new int[0];
+        child2 = new int[0];
+        height = new int[0];
+        entities = new Entity[0];
+        growNodes(INITIAL_CAPACITY);
+    }
+
+    // BROAD PHASE
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public void add(Entity entity) {
+        if (!entity.has(BODY) || entity.getBody().getBroadphaseProxy() != -1)
+            return;
+
+        int leaf = allocateNode();
+        entities[leaf] = entity;
+        setFatBounds(leaf, entity.getBody().getBounds());
+        insertLeaf(leaf);
+        entity.getBody().setBroadphaseProxy(leaf);
+    }
+
+    @Override
+    public void remove(Entity entity) {
+        if (!entity.has(BODY))
+            return;
+
+        int leaf = entity.getBody().getBroadphaseProxy();
+        if (leaf == -1)
+            return;
+
+        removeLeaf(leaf);
+        freeNode(leaf);
+        entity.getBody().setBroadphaseProxy(-1);
+    }
+
+    /**
+     * Re-inserts the leaf of the entity, but only if its bounds left the fat bounds.
+     */
+    @Override
+    public void update(Entity entity) {
+        Body body = entity.getBody();
+        int leaf = body.getBroadphaseProxy();
+        if (leaf == -1)
+            return;
+
+        CollisionBox bounds = body.getBounds();
+        float x = bounds.getPosition().x + bounds.getOffset().x;
+        float y = bounds.getPosition().y + bounds.getOffset().y;
+        if (minX[leaf] <= x && minY[leaf] <= y
+                && x + bounds.getWidth() <= maxX[leaf] && y + bounds.getHeight() <= maxY[leaf])
+            return;
+
+        removeLeaf(leaf);
+        setFatBounds(leaf, bounds);
+        insertLeaf(leaf);
+    }
+
+    @Override
+    public void clear() {
+        for (int node = 0; node < nodeCapacity; node++) {
+            if (entities[node] != null)
+                entities[node].getBody().setBroadphaseProxy(-1);
+        }
+        Arrays.fill(entities, null);
+        root = NULL_NODE;
+        freeList = NULL_NODE;
+        linkFreeNodes(0, nodeCapacity);
+    }
+
+    /**
+     * Queries the tree with the fat bounds of every leaf. A pair is only reported by the leaf
+     * with the smaller node id, so that it is emitted once.
+     */
+    @Override
+    public Array<Entity> findPairs(Array<Entity> pairs) {
+        pairs.clear();
+        for (int leaf = 0; leaf < nodeCapacity; leaf++) {
+            if (height[leaf] != 0)
+                continue;
+
+            stack.clear();
+            stack.add(root);
+            while (stack.size > 0) {
+                int node = stack.pop();
+                if (node == NULL_NODE || !overlaps(node, minX[leaf], minY[leaf], maxX[leaf], maxY[leaf]))
+                    continue;
+
+                if (isLeaf(node)) {
+                    if (node > leaf) {
+                        pairs.add(entities[leaf]);
+                        pairs.add(entities[node]);
+                    }
+                } else {
+                    stack.add(child1[node]);
+                    stack.add(child2[node]);
+                }
+            }
+        }
+        return pairs;
+    }
+
+    @Override
+    public Array<Entity> query(float x, float y, float width, float height, Array<Entity> sink) {
+        sink.clear();
+        stack.clear();
+        stack.add(root);
+        while (stack.size > 0) {
+            int node = stack.pop();
+            if (node == NULL_NODE || !overlaps(node, x, y, x + width, y + height))
+                continue;
+
+            if (isLeaf(node)) {
+                sink.add(entities[node]);
+            } else {
+                stack.add(child1[node]);
+                stack.add(child2[node]);
+            }
+        }
+        return sink;
+    }
+
+    @Override
+    public Array<Entity> rayCast(Vector2 start, Vector2 end, Array<Entity> sink) {
+        sink.clear();
+        raySink = sink;
+        rayCast(start, end, sinkCallback);
+        raySink = null;
+        return sink;
+    }
+
+    /**
+     * Casts the segment start -> end through the tree. Branches whose bounds are not crossed by
+     * the segment, or are only crossed behind the current clipping fraction, are skipped.
+     *
+     * @param start    start of the segment
+     * @param end      end of the segment
+     * @param callback called for every leaf crossed by the segment, may clip or end the ray cast
+     */
+    public void rayCast(Vector2 start, Vector2 end, RayCastCallback callback) {
+        float maxFraction = 1f;
+        stack.clear();
+        stack.add(root);
+        while (stack.size > 0) {
+            int node = stack.pop();
+            if (node == NULL_NODE)
+                continue;
+
+            float fraction = getSegmentEntry(start.x, start.y, end.x, end.y,
+                    minX[node], minY[node], maxX[node], maxY[node]);
+            if (fraction < 0 || fraction > maxFraction)
+                continue;
+
+            if (isLeaf(node)) {
+                float value = callback.reportEntity(entities[node], fraction, maxFraction);
+                if (value == 0f)
+                    return;
+                if (value > 0f && value < maxFraction)
+                    maxFraction = value;
+            } else {
+                stack.add(child1[node]);
+                stack.add(child2[node]);
+            }
+        }
+    }
+
+    @Override
+    public Type getType() {
+        return Type.DYNAMIC_TREE;
+    }
+
+    /**
+     * Returns the height of the tree, 0 for a single leaf and -1 for an empty tree.
+     */
+    public int getHeight() {
+        return root == NULL_NODE ? -1 : height[root];
+    }
+
+    // TREE MANAGEMENT
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Inserts a leaf next to the sibling which minimizes the added perimeter of the tree, then
+     * refits and balances all ancestors.
+     */
+    private void insertLeaf(int leaf) {
+        if (root == NULL_NODE) {
+            root = leaf;
+            parent[root] = NULL_NODE;
+            return;
+        }
+
+        /**
+         * Descend as long as pushing the leaf further down is cheaper than pairing it with the
+         * current node. Every node on the way has to grow by the bounds of the leaf, which is the
+         * inheritance cost of descending.
+         */
+        int index = root;
+        while (!isLeaf(index)) {
+            float area = perimeter(index);
+            float combinedArea = combinedPerimeter(index, leaf);
+            float cost = 2f * combinedArea;
+            float inheritanceCost = 2f * (combinedArea - area);
+
+            float cost1 = descendCost(child1[index], leaf) + inheritanceCost;
+            float cost2 = descendCost(child2[index], leaf) + inheritanceCost;
+
+            if (cost < cost1 && cost < cost2)
+                break;
+            index = cost1 < cost2 ? child1[index] : child2[index];
+        }
+
+        int sibling = index;
+        int oldParent = parent[sibling];
+        int newParent = allocateNode();
+        parent[newParent] = oldParent;
+        setUnion(newParent, leaf, sibling);
+        height[newParent] = height[sibling] + 1;
+
+        if (oldParent != NULL_NODE) {
+            if (child1[oldParent] == sibling)
+                child1[oldParent] = newParent;
+            else
+                child2[oldParent] = newParent;
+        } else {
+            root = newParent;
+        }
+        child1[newParent] = sibling;
+        child2[newParent] = leaf;
+        parent[sibling] = newParent;
+        parent[leaf] = newParent;
+
+        refitAncestors(parent[leaf]);
+    }
+
+    /**
+     * Removes a leaf from the tree. Its parent is freed and replaced by the sibling of the leaf.
+     * The leaf node itself stays allocated.
+     */
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL_NODE;
+            return;
+        }
+
+        int oldParent = parent[leaf];
+        int grandParent = parent[oldParent];
+        int sibling = child1[oldParent] == leaf ? child2[oldParent] : child1[oldParent];
+
+        if (grandParent != NULL_NODE) {
+            if (child1[grandParent] == oldParent)
+                child1[grandParent] = sibling;
+            else
+                child2[grandParent] = sibling;
+            parent[sibling] = grandParent;
+            freeNode(oldParent);
+            refitAncestors(grandParent);
+        } else {
+            root = sibling;
+            parent[sibling] = NULL_NODE;
+            freeNode(oldParent);
+        }
+    }
+
+    /**
+     * Walks up from the given node to the root, balancing each node and recomputing its bounds
+     * and height.
+     */
+    private void refitAncestors(int index) {
+        while (index != NULL_NODE) {
+            index = balance(index);
+            int c1 = child1[index];
+            int c2 = child2[index];
+            height[index] = 1 + Math.max(height[c1], height[c2]);
+            setUnion(index, c1, c2);
+            index = parent[index];
+        }
+    }
+
+    /**
+     * Performs a left or right rotation if node a is imbalanced.
+     * @return the node now taking the place of a
+     */
+    private int balance(int a) {
+        if (isLeaf(a) || height[a] < 2)
+            return a;
+
+        int b = child1[a];
+        int c = child2[a];
+        int balance = height[c] - height[b];
+
+        // Rotate c up
+        if (balance > 1) {
+            int f = child1[c];
+            int g = child2[c];
+
+            child1[c] = a;
+            parent[c] = parent[a];
+            parent[a] = c;
+            replaceChild(parent[c], a, c);
+
+            if (height[f] > height[g]) {
+                child2[c] = f;
+                child2[a] = g;
+                parent[g] = a;
+                setUnion(a, b, g);
+                setUnion(c, a, f);
+                height[a] = 1 + Math.max(height[b], height[g]);
+                height[c] = 1 + Math.max(height[a], height[f]);
+            } else {
+                child2[c] = g;
+                child2[a] = f;
+                parent[f] = a;
+                setUnion(a, b, f);
+                setUnion(c, a, g);
+                height[a] = 1 + Math.max(height[b], height[f]);
+                height[c] = 1 + Math.max(height[a], height[g]);
+            }
+            return c;
+        }
+
+        // Rotate b up
+        if (balance < -1) {
+            int d = child1[b];
+            int e = child2[b];
+
+            child1[b] = a;
+            parent[b] = parent[a];
+            parent[a] = b;
+            replaceChild(parent[b], a, b);
+
+            if (height[d] > height[e]) {
+                child2[b] = d;
+                child1[a] = e;
+                parent[e] = a;
+                setUnion(a, c, e);
+                setUnion(b, a, d);
+                height[a] = 1 + Math.max(height[c], height[e]);
+                height[b] = 1 + Math.max(height[a], height[d]);
+            } else {
+                child2[b] = e;
+                child1[a] = d;
+                parent[d] = a;
+                setUnion(a, c, d);
+                setUnion(b, a, e);
+                height[a] = 1 + Math.max(height[c], height[d]);
+                height[b] = 1 + Math.max(height[a], height[e]);
+            }
+            return b;
+        }
+        return a;
+    }
+
+    private void replaceChild(int node, int oldChild, int newChild) {
+        if (node == NULL_NODE) {
+            root = newChild;
+        } else if (child1[node] == oldChild) {
+            child1[node] = newChild;
+        } else {
+            child2[node] = newChild;
+        }
+    }
+
+    // NODE POOL
+    // ---------------------------------------------------------------------------------------------
+
+    private int allocateNode() {
+        if (freeList == NULL_NODE)
+            growNodes(nodeCapacity * 2);
+
+        int node = freeList;
+        freeList = parent[node];
+        parent[node] = NULL_NODE;
+        child1[node] = NULL_NODE;
+        child2[node] = NULL_NODE;
+        height[node] = 0;
+        entities[node] = null;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        parent[node] = freeList;
+        height[node] = -1;
+        entities[node] = null;
+        freeList = node;
+    }
+
+    private void growNodes(int capacity) {
+        int oldCapacity = nodeCapacity;
+        minX = Arrays.copyOf(minX, capacity);
+        minY = Arrays.copyOf(minY, capacity);
+        maxX = Arrays.copyOf(maxX, capacity);
+        maxY = Arrays.copyOf(maxY, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        child1 = Arrays.copyOf(child1, capacity);
+        child2 = Arrays.copyOf(child2, capacity);
+        height = Arrays.copyOf(height, capacity);
+        entities = Arrays.copyOf(entities, capacity);
+        nodeCapacity = capacity;
+        linkFreeNodes(oldCapacity, capacity);
+    }
+
+    /**
+     * Pushes the nodes in [from, to) onto the free list.
+     */
+    private void linkFreeNodes(int from, int to) {
+        for (int node = to - 1; node >= from; node--) {
+            freeNode(node);
+        }
+    }
+
+    // BOUNDS HELPERS
+    // ---------------------------------------------------------------------------------------------
+
+    private boolean isLeaf(int node) {
+        return child1[node] == NULL_NODE;
+    }
+
+    private void setFatBounds(int leaf, CollisionBox bounds) {
+        float x = bounds.getPosition().x + bounds.getOffset().x;
+        float y = bounds.getPosition().y + bounds.getOffset().y;
+        minX[leaf] = x - AABB_MARGIN;
+        minY[leaf] = y - AABB_MARGIN;
+        maxX[leaf] = x + bounds.getWidth() + AABB_MARGIN;
+        maxY[leaf] = y + bounds.getHeight() + AABB_MARGIN;
+    }
+
+    private void setUnion(int target, int a, int b) {
+        minX[target] = Math.min(minX[a], minX[b]);
+        minY[target] = Math.min(minY[a], minY[b]);
+        maxX[target] = Math.max(maxX[a], maxX[b]);
+        maxY[target] = Math.max(maxY[a], maxY[b]);
+    }
+
+    private boolean overlaps(int node, float x1, float y1, float x2, float y2) {
+        return minX[node] <= x2 && x1 <= maxX[node] && minY[node] <= y2 && y1 <= maxY[node];
+    }
+
+    private float perimeter(int node) {
+        return 2f * (maxX[node] - minX[node] + maxY[node] - minY[node]);
+    }
+
+    private float combinedPerimeter(int a, int b) {
+        float w = Math.max(maxX[a], maxX[b]) - Math.min(minX[a], minX[b]);
+        float h = Math.max(maxY[a], maxY[b]) - Math.min(minY[a], minY[b]);
+        return 2f * (w + h);
+    }
+
+    /**
+     * Cost of inserting the leaf below the given child. For inner nodes only the growth counts,
+     * as a new parent would be created further down.
+     */
+    private float descendCost(int child, int leaf) {
+        if (isLeaf(child))
+            return combinedPerimeter(child, leaf);
+        return combinedPerimeter(child, leaf) - perimeter(child);
+    }
+}
@@ -0,0 +1,102 @@
+package com.trent.awesomejumper.controller.collision;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.trent.awesomejumper.controller.entitymanagement.EntityList;
+import com.trent.awesomejumper.controller.entitymanagement.WorldContainer;
+import com.trent.awesomejumper.engine.entity.Entity;
+import com.trent.awesomejumper.engine.modelcomponents.Body;
+
+import static com.trent.awesomejumper.engine.modelcomponents.ModelComponent.ComponentID.BODY;
+
+/**
+ * Broad phase based on the spatial hashing grid of the WorldContainer.
+ * The grid is maintained by the WorldContainer itself, as tile and ray queries depend on it
+ * regardless of the chosen broad phase. Adding, removing and updating entities is therefore a
+ * no-op here.
+ */
+public class SpatialHashBroadphase implements Broadphase {
+
+    // MEMBERS & INSTANCES
+    // ---------------------------------------------------------------------------------------------
+
+    private WorldContainer worldContainer;
+
+    // CONSTRUCTOR
+    // ---------------------------------------------------------------------------------------------
+
+    public SpatialHashBroadphase(WorldContainer worldContainer) {
+        this.worldContainer = worldContainer;
+    }
+
+    // METHODS & FUNCTIONS
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public void add(Entity entity) {
+    }
+
+    @Override
+    public void remove(Entity entity) {
+    }
+
+    @Override
+    public void update(Entity entity) {
+    }
+
+    @Override
+    public void clear() {
+    }
+
+    /**
+     * Collects all pairs of entities sharing a hash cell.
+     * Only the cells covered by an entity are visited, never the whole grid. Two entities that span
+     * several cells share more than one of them. A pair is only reported in the lower left cell of
+     * the intersection of both cell ranges and by the entity with the lower ID, so that it is
+     * emitted once.
+     */
+    @Override
+    public Array<Entity> findPairs(Array<Entity> pairs) {
+        pairs.clear();
+        EntityList entities = worldContainer.getEntities();
+        for (int i = 0; i < entities.size(); i++) {
+            Entity entity = entities.get(i);
+            if (!entity.has(BODY) || !entity.getBody().isInSpatialGrid())
+                continue;
+
+            Body a = entity.getBody();
+            for (int cx = a.getCellStartX(); cx <= a.getCellEndX(); cx++) {
+                for (int cy = a.getCellStartY(); cy <= a.getCellEndY(); cy++) {
+                    Array<Entity> cellEntities = worldContainer.getEntitiesForCell(cx, cy);
+                    for (int j = 0; j < cellEntities.size; j++) {
+                        Entity other = cellEntities.get(j);
+                        if (other.getID() <= entity.getID())
+                            continue;
+                        Body b = other.getBody();
+                        if (Math.max(a.getCellStartX(), b.getCellStartX()) != cx
+                                || Math.max(a.getCellStartY(), b.getCellStartY()) != cy)
+                            continue;
+                        pairs.add(entity);
+                        pairs.add(other);
+                    }
+                }
+            }
+        }
+        return pairs;
+    }
+
+    @Override
+    public Array<Entity> query(float x, float y, float width, float height, Array<Entity> sink) {
+        return worldContainer.getEntitiesInArea(x, y, width, height, sink);
+    }
+
+    @Override
+    public Array<Entity> rayCast(Vector2 start, Vector2 end, Array<Entity> sink) {
+        return worldContainer.getEntitiesAlongSegment(start, end, sink);
+    }
+
+    @Override
+    public Type getType() {
+        return Type.SPATIAL_HASH;
+    }
+}
@@ -0,0 +1,244 @@
+package com.trent.awesomejumper.controller.collision;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.trent.awesomejumper.engine.entity.Entity;
+import com.trent.awesomejumper.engine.modelcomponents.Body;
+import com.trent.awesomejumper.engine.physics.CollisionBox;
+
+import java.util.Arrays;
+
+import static com.trent.awesomejumper.engine.modelcomponents.ModelComponent.ComponentID.BODY;
+import static com.trent.awesomejumper.utils.Utils.getSegmentEntry;
+
+/**
+ * Sweep and prune broad phase along the x axis.
+ * Every entity owns a proxy holding its bounds and two endpoints (min x, max x) in one sorted
+ * endpoint array. The array is kept across frames and re-sorted with insertion sort, which is
+ * close to linear as most entities barely move between two frames. A sweep over the sorted
+ * endpoints then reports every pair overlapping on both axes exactly once.
+ */
+public class SweepAndPruneBroadphase implements Broadphase {
+
+    // MEMBERS & INSTANCES
+    // ---------------------------------------------------------------------------------------------
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Proxies, indexed by the proxy id stored in the body of the entity
+    private Array<Entity> proxyEntities = new Array<>(true, INITIAL_CAPACITY);
+    private IntArray freeProxies = new IntArray();
+    private IntArray removedProxies = new IntArray();   // freed once their endpoints are gone
+    private float[] minX = new float[INITIAL_CAPACITY];
+    private float[] maxX = new float[INITIAL_CAPACITY];
+    private float[] minY = new float[INITIAL_CAPACITY];
+    private float[] maxY = new float[INITIAL_CAPACITY];
+
+    // Endpoints, sorted by their value. data = proxy << 1 | 1 for max endpoints
+    private float[] endpointValues = new float[2 * INITIAL_CAPACITY];
+    private int[] endpointData = new int[2 * INITIAL_CAPACITY];
+    private int endpointCount = 0;
+
+    // Proxies whose x interval contains the current sweep position
+    private IntArray activeProxies = new IntArray();
+
+    // METHODS & FUNCTIONS
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public void add(Entity entity) {
+        if (!entity.has(BODY) || entity.getBody().getBroadphaseProxy() != -1)
+            return;
+
+        int proxy;
+        if (freeProxies.size > 0) {
+            proxy = freeProxies.pop();
+            proxyEntities.set(proxy, entity);
+        } else {
+            proxy = proxyEntities.size;
+            proxyEntities.add(entity);
+            ensureProxyCapacity(proxy + 1);
+        }
+        entity.getBody().setBroadphaseProxy(proxy);
+        update(entity);
+
+        /**
+         * The new endpoints are appended and moved to their place by the next insertion sort.
+         */
+        ensureEndpointCapacity(endpointCount + 2);
+        endpointValues[endpointCount] = minX[proxy];
+        endpointData[endpointCount++] = proxy << 1;
+        endpointValues[endpointCount] = maxX[proxy];
+        endpointData[endpointCount++] = proxy << 1 | 1;
+    }
+
+    @Override
+    public void remove(Entity entity) {
+        if (!entity.has(BODY))
+            return;
+
+        int proxy = entity.getBody().getBroadphaseProxy();
+        if (proxy == -1)
+            return;
+
+        /**
+         * The endpoints of the proxy are dropped by the next sort, which visits all endpoints
+         * anyway. Until then the proxy id must not be reused.
+         */
+        proxyEntities.set(proxy, null);
+        removedProxies.add(proxy);
+        entity.getBody().setBroadphaseProxy(-1);
+    }
+
+    @Override
+    public void update(Entity entity) {
+        Body body = entity.getBody();
+        int proxy = body.getBroadphaseProxy();
+        if (proxy == -1)
+            return;
+
+        CollisionBox bounds = body.getBounds();
+        float x = bounds.getPosition().x + bounds.getOffset().x;
+        float y = bounds.getPosition().y + bounds.getOffset().y;
+        minX[proxy] = x;
+        maxX[proxy] = x + bounds.getWidth();
+        minY[proxy] = y;
+        maxY[proxy] = y + bounds.getHeight();
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < proxyEntities.size; i++) {
+            Entity e = proxyEntities.get(i);
+            if (e != null)
+                e.getBody().setBroadphaseProxy(-1);
+        }
+        proxyEntities.clear();
+        freeProxies.clear();
+        removedProxies.clear();
+        activeProxies.clear();
+        endpointCount = 0;
+    }
+
+    @Override
+    public Array<Entity> findPairs(Array<Entity> pairs) {
+        pairs.clear();
+        sortEndpoints();
+
+        /**
+         * Sweep from left to right. Reaching a min endpoint, the proxy is tested on the y axis
+         * against all proxies whose x interval is still open and becomes active itself.
+         * Reaching a max endpoint closes the interval of the proxy.
+         */
+        activeProxies.clear();
+        for (int i = 0; i < endpointCount; i++) {
+            int proxy = endpointData[i] >> 1;
+
+            if ((endpointData[i] & 1) == 1) {
+                for (int a = 0; a < activeProxies.size; a++) {
+                    if (activeProxies.get(a) == proxy) {
+                        activeProxies.set(a, activeProxies.get(activeProxies.size - 1));
+                        activeProxies.pop();
+                        break;
+                    }
+                }
+                continue;
+            }
+
+            for (int a = 0; a < activeProxies.size; a++) {
+                int other = activeProxies.get(a);
+                if (minY[proxy] <= maxY[other] && minY[other] <= maxY[proxy]) {
+                    pairs.add(proxyEntities.get(other));
+                    pairs.add(proxyEntities.get(proxy));
+                }
+            }
+            activeProxies.add(proxy);
+        }
+        return pairs;
+    }
+
+    /**
+     * Tests the bounds of every proxy against the rectangle. The endpoints are not used here, as
+     * they only describe the x axis and would not save much for a single rectangle.
+     */
+    @Override
+    public Array<Entity> query(float x, float y, float width, float height, Array<Entity> sink) {
+        sink.clear();
+        for (int proxy = 0; proxy < proxyEntities.size; proxy++) {
+            if (proxyEntities.get(proxy) == null)
+                continue;
+            if (minX[proxy] <= x + width && x <= maxX[proxy] && minY[proxy] <= y + height && y <= maxY[proxy])
+                sink.add(proxyEntities.get(proxy));
+        }
+        return sink;
+    }
+
+    @Override
+    public Array<Entity> rayCast(Vector2 start, Vector2 end, Array<Entity> sink) {
+        sink.clear();
+        for (int proxy = 0; proxy < proxyEntities.size; proxy++) {
+            if (proxyEntities.get(proxy) == null)
+                continue;
+            if (getSegmentEntry(start.x, start.y, end.x, end.y, minX[proxy], minY[proxy], maxX[proxy], maxY[proxy]) >= 0)
+                sink.add(proxyEntities.get(proxy));
+        }
+        return sink;
+    }
+
+    /**
+     * Refreshes the endpoint values from the proxy bounds, drops the endpoints of removed proxies
+     * and restores the order with an insertion sort. At equal values min endpoints come first, so
+     * touching bounds are reported.
+     */
+    private void sortEndpoints() {
+        int kept = 0;
+        for (int i = 0; i < endpointCount; i++) {
+            int proxy = endpointData[i] >> 1;
+            if (proxyEntities.get(proxy) == null)
+                continue;
+            endpointValues[kept] = (endpointData[i] & 1) == 0 ? minX[proxy] : maxX[proxy];
+            endpointData[kept++] = endpointData[i];
+        }
+        endpointCount = kept;
+        freeProxies.addAll(removedProxies);
+        removedProxies.clear();
+
+        for (int i = 1; i < endpointCount; i++) {
+            float value = endpointValues[i];
+            int data = endpointData[i];
+            int j = i - 1;
+            while (j >= 0 && (endpointValues[j] > value
+                    || (endpointValues[j] == value && (endpointData[j] & 1) > (data & 1)))) {
+                endpointValues[j + 1] = endpointValues[j];
+                endpointData[j + 1] = endpointData[j];
+                j--;
+            }
+            endpointValues[j + 1] = value;
+            endpointData[j + 1] = data;
+        }
+    }
+
+    private void ensureProxyCapacity(int capacity) {
+        if (capacity <= minX.length)
+            return;
+        int newCapacity = Math.max(capacity, minX.length * 2);
+        minX = Arrays.copyOf(minX, newCapacity);
+        maxX = Arrays.copyOf(maxX, newCapacity);
+        minY = Arrays.copyOf(minY, newCapacity);
+        maxY = Arrays.copyOf(maxY, newCapacity);
+    }
+
+    private void ensureEndpointCapacity(int capacity) {
+        if (capacity <= endpointValues.length)
+            return;
+        int newCapacity = Math.max(capacity, endpointValues.length * 2);
+        endpointValues = Arrays.copyOf(endpointValues, newCapacity);
+        endpointData = Arrays.copyOf(endpointData, newCapacity);
+    }
+
+    @Override
+    public Type getType() {
+        return Type.SWEEP_AND_PRUNE;
+    }
+}
@@ -0,0 +1,42 @@
+package com.trent.awesomejumper.controller.entitymanagement;
+
+/**
+ * Reusable cursor describing a rectangular range of cells in the spatial hashing grid.
+ * Filled by {@link WorldContainer#getCellRange(com.trent.awesomejumper.engine.entity.Entity, CellRange)}
+ * and iterated with two plain int loops from (startX,startY) to (endX,endY), both inclusive.
+ * The range is already clipped to the grid, so every cell inside it is valid. An empty range has
+ * startX > endX or startY > endY.
+ */
+public class CellRange {
+
+    // MEMBERS & INSTANCES
+    // ---------------------------------------------------------------------------------------------
+
+    public int startX, startY;      // lower left cell
+    public int endX, endY;          // upper right cell
+
+    // METHODS & FUNCTIONS
+    // ---------------------------------------------------------------------------------------------
+
+    public CellRange set(int startX, int startY, int endX, int endY) {
+        this.startX = startX;
+        this.startY = startY;
+        this.endX = endX;
+        this.endY = endY;
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return startX > endX || startY > endY;
+    }
+
+    public int size() {
+        return isEmpty() ? 0 : (endX - startX + 1) * (endY - startY + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "CELLS (" + startX + "," + startY + ") TO (" + endX + "," + endY + ")";
+    }
+
+}
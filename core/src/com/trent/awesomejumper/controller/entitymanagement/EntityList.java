@@ -0,0 +1,126 @@
+package com.trent.awesomejumper.controller.entitymanagement;
+
+import com.badlogic.gdx.utils.Array;
+import com.trent.awesomejumper.engine.entity.Entity;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Dense storage of all entities in the world.
+ * The list itself is a read-only view. Structural changes are buffered and only applied by
+ * {@link #flush()}, which the WorldController calls at fixed points of a frame:
+ * - entities added during an iteration are not visited before the next flush
+ * - entities removed or killed during an iteration are still visited until the next flush
+ * Every entity knows its own slot, so a removal swaps the last entity into the freed slot in
+ * constant time. The order of the entities is therefore not the order of registration.
+ * Iterate with an index loop over {@link #size()} and {@link #get(int)} to avoid allocating an
+ * iterator.
+ */
+public class EntityList implements Iterable<Entity> {
+
+    // MEMBERS & INSTANCES
+    // ---------------------------------------------------------------------------------------------
+
+    private final Array<Entity> entities = new Array<>(false, 128);
+    private final Array<Entity> pendingAdditions = new Array<>(false, 16);
+    private final Array<Entity> pendingRemovals = new Array<>(false, 16);
+
+    // METHODS & FUNCTIONS
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Buffers an entity to be appended on the next flush.
+     */
+    public void add(Entity entity) {
+        pendingAdditions.add(entity);
+    }
+
+    /**
+     * Buffers an entity to be removed on the next flush.
+     */
+    public void remove(Entity entity) {
+        pendingRemovals.add(entity);
+    }
+
+    /**
+     * Applies all buffered changes. Removed entities are swapped out of their slots, then the
+     * added entities which are still alive are appended. The cost depends only on the number of
+     * buffered changes.
+     */
+    public void flush() {
+        for (int i = 0; i < pendingRemovals.size; i++) {
+            Entity e = pendingRemovals.get(i);
+            int slot = e.getListIndex();
+            if (slot < 0)
+                continue;
+            Entity last = entities.pop();
+            if (last != e) {
+                entities.set(slot, last);
+                last.setListIndex(slot);
+            }
+            e.setListIndex(-1);
+        }
+        pendingRemovals.clear();
+
+        for (int i = 0; i < pendingAdditions.size; i++) {
+            Entity e = pendingAdditions.get(i);
+            if (!e.isAlive() || e.getListIndex() >= 0)
+                continue;
+            e.setListIndex(entities.size);
+            entities.add(e);
+        }
+        pendingAdditions.clear();
+    }
+
+    /**
+     * Removes all entities, including buffered ones, immediately.
+     */
+    public void clear() {
+        for (int i = 0; i < entities.size; i++) {
+            entities.get(i).setListIndex(-1);
+        }
+        entities.clear();
+        pendingAdditions.clear();
+        pendingRemovals.clear();
+    }
+
+    public int size() {
+        return entities.size;
+    }
+
+    public Entity get(int index) {
+        return entities.get(index);
+    }
+
+    public int getPendingChanges() {
+        return pendingAdditions.size + pendingRemovals.size;
+    }
+
+    /**
+     * Returns a read-only iterator over the entities.
+     */
+    @Override
+    public Iterator<Entity> iterator() {
+        return new Iterator<Entity>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < entities.size;
+            }
+
+            @Override
+            public Entity next() {
+                if (index >= entities.size)
+                    throw new NoSuchElementException();
+                return entities.get(index++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("ENTITY LIST IS READ-ONLY");
+            }
+        };
+    }
+}
@@ -9,7 +9,6 @@ import com.trent.awesomejumper.models.lootable.Lootable;
 import com.trent.awesomejumper.models.projectile.Projectile;
 import com.trent.awesomejumper.models.weapons.Weapon;
 
-import static com.trent.awesomejumper.engine.modelcomponents.ModelComponent.ComponentID.HEALTH;
 /**
  * Manages the registration of entities at runtime. Adds entities to specified collections of
  * worldContainer and loads its textures with renderingEngine.
@@ -47,11 +46,20 @@ public class EntityManager {
     // METHODS & FUNCTIONS
     // ---------------------------------------------------------------------------------------------
 
+    /**
+     * @param renderingEngine may be null if the world is simulated without graphics, entities are
+     *                        registered without initializing their graphics then.
+     */
     public void setControllers(WorldContainer worldContainer, RenderingEngine renderingEngine) {
         this.worldContainer = worldContainer;
         this.renderingEngine = renderingEngine;
     }
 
+    private void initGraphics(Entity entity) {
+        if (renderingEngine != null)
+            renderingEngine.initGraphics(entity);
+    }
+
 
     /**
      * Adds the entity to all relevant collections. Decides with the help of the entities type
@@ -65,9 +73,8 @@ public class EntityManager {
      */
     public void registerEntity(Projectile projectile) {
         worldContainer.registerEntity(projectile);
-        worldContainer.getProjectiles().add(projectile);
         worldContainer.getRays().add(projectile.getRay());
-        renderingEngine.initGraphics(projectile);
+        initGraphics(projectile);
     }
 
     /**
@@ -76,11 +83,9 @@ public class EntityManager {
      */
     public void registerEntity(Weapon weapon) {
         worldContainer.registerEntity(weapon);
-        worldContainer.getWeaponDrops().add(weapon);
-        worldContainer.getMobileEntities().add(weapon);
         worldContainer.placeEntity(weapon, weapon.getPosition());
         weapon.getBody().reset();
-        renderingEngine.initGraphics(weapon);
+        initGraphics(weapon);
     }
 
     /**
@@ -89,10 +94,7 @@ public class EntityManager {
      */
     public void registerEntity(Lootable lootable) {
         worldContainer.registerEntity(lootable);
-        worldContainer.getMobileEntities().add(lootable);
-        if(lootable.has(HEALTH))
-            worldContainer.getLivingEntities().add(lootable);
-        renderingEngine.initGraphics(lootable);
+        initGraphics(lootable);
     }
 
     /**
@@ -101,9 +103,7 @@ public class EntityManager {
      */
     public void registerEntity(Player player) {
         worldContainer.registerEntity(player);
-        worldContainer.getMobileEntities().add(player);
-        worldContainer.getLivingEntities().add(player);
-        renderingEngine.initGraphics(player);
+        initGraphics(player);
     }
 
     /**
@@ -111,10 +111,41 @@ public class EntityManager {
      */
     public void registerEntity(Entity entity) {
         worldContainer.registerEntity(entity);
-        worldContainer.getMobileEntities().add(entity);
-        if(entity.has(HEALTH))
-            worldContainer.getLivingEntities().add(entity);
-        renderingEngine.initGraphics(entity);
+        initGraphics(entity);
+    }
+
+    /**
+     * Re-buckets the entity in the spatial hashing grid if its body moved to other cells and
+     * passes the new bounds to the broad phase.
+     * Called by the body after each positional update.
+     * @param entity
+     */
+    public void updateSpatialData(Entity entity) {
+        if (worldContainer == null)
+            return;
+        worldContainer.updateEntityCells(entity);
+        worldContainer.getBroadphase().update(entity);
+    }
+
+    /**
+     * Queues a destroyed entity for removal from the world. It is unlinked from all collections by
+     * the next garbage removal.
+     * @param entity
+     */
+    public void onEntityDestroyed(Entity entity) {
+        if (worldContainer != null)
+            worldContainer.enqueueRemoval(entity);
+    }
+
+    /**
+     * Moves the entity between the entity queries after it enabled a component.
+     * Entities which are not registered in the world yet are ignored, they are sorted into the
+     * queries on registration.
+     * @param entity
+     */
+    public void onComponentsChanged(Entity entity) {
+        if (worldContainer != null)
+            worldContainer.updateEntityQueries(entity);
     }
 
     public void registerRay(Ray ray) {
@@ -127,6 +158,8 @@ public class EntityManager {
 
     public void reset() {
         worldContainer.reset();
+        if (renderingEngine == null)
+            return;
         renderingEngine.loadTexturesAndFonts();
         renderingEngine.initGraphics(worldContainer.getPlayer());
         renderingEngine.setPlayer(worldContainer.getPlayer());
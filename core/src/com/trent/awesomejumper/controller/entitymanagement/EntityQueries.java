@@ -0,0 +1,77 @@
+package com.trent.awesomejumper.controller.entitymanagement;
+
+import com.badlogic.gdx.utils.Array;
+import com.trent.awesomejumper.engine.entity.Entity;
+
+/**
+ * Registry of all entity queries of the world. Keeps the member lists of the queries in sync
+ * with the component masks of the entities.
+ * Membership of an entity is stored as one bit per query in the entity itself, so at most 64
+ * queries can be registered.
+ */
+public class EntityQueries {
+
+    // MEMBERS & INSTANCES
+    // ---------------------------------------------------------------------------------------------
+
+    private static final int MAX_QUERIES = 64;
+
+    private final Array<EntityQuery> queries = new Array<>(true, 8);
+
+    // METHODS & FUNCTIONS
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Registers a new query. Entities already in the world are not added until they are
+     * updated, so all queries should be registered before the first entity.
+     *
+     * @param required mask of the components an entity needs to match
+     * @param excluded mask of the components an entity must not have to match
+     * @return the new query
+     */
+    public EntityQuery register(long required, long excluded) {
+        if (queries.size == MAX_QUERIES)
+            throw new IllegalArgumentException("TOO MANY ENTITY QUERIES. MAXIMUM: " + MAX_QUERIES);
+        EntityQuery query = new EntityQuery(required, excluded, queries.size);
+        queries.add(query);
+        return query;
+    }
+
+    /**
+     * Adds the entity to every query it matches now and removes it from every query it no longer
+     * matches. Dead entities are ignored, they are removed by the garbage removal.
+     */
+    public void update(Entity entity) {
+        if (!entity.isAlive())
+            return;
+        long mask = entity.getComponentMask();
+        for (int i = 0; i < queries.size; i++) {
+            EntityQuery query = queries.get(i);
+            boolean matches = query.matches(mask);
+            boolean member = query.contains(entity);
+            if (matches && !member)
+                query.add(entity);
+            else if (!matches && member)
+                query.remove(entity);
+        }
+    }
+
+    /**
+     * Removes the entity from all queries it is part of.
+     */
+    public void remove(Entity entity) {
+        if (entity.getQueryMembership() == 0L)
+            return;
+        for (int i = 0; i < queries.size; i++) {
+            EntityQuery query = queries.get(i);
+            if (query.contains(entity))
+                query.remove(entity);
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < queries.size; i++) {
+            queries.get(i).clear();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.trent.awesomejumper.controller.entitymanagement;
+
+import com.badlogic.gdx.utils.Array;
+import com.trent.awesomejumper.engine.entity.Entity;
+
+/**
+ * Dense list of all alive entities in the world matching a component signature.
+ * An entity matches if it has all required components and none of the excluded ones.
+ * The list is maintained by {@link EntityQueries} whenever an entity is registered, enables a
+ * component or is removed from the world, so systems can iterate it directly without checking
+ * any components. Dead entities stay in the list until the next garbage removal.
+ * Every member knows its slot in the list, so removal swaps the last member into the freed slot.
+ */
+public class EntityQuery {
+
+    // MEMBERS & INSTANCES
+    // ---------------------------------------------------------------------------------------------
+
+    private final long required;
+    private final long excluded;
+    private final int index;                // index of this query in the registry
+    private final long membershipBit;       // bit marking members in Entity.getQueryMembership()
+    private final Array<Entity> entities = new Array<>(false, 32);
+
+    // CONSTRUCTOR
+    // ---------------------------------------------------------------------------------------------
+
+    EntityQuery(long required, long excluded, int index) {
+        this.required = required;
+        this.excluded = excluded;
+        this.index = index;
+        this.membershipBit = 1L << index;
+    }
+
+    // METHODS & FUNCTIONS
+    // ---------------------------------------------------------------------------------------------
+
+    public boolean matches(long componentMask) {
+        return (componentMask & required) == required && (componentMask & excluded) == 0;
+    }
+
+    /**
+     * Returns whether the entity is part of this query. Does not search the list.
+     */
+    public boolean contains(Entity entity) {
+        return (entity.getQueryMembership() & membershipBit) != 0;
+    }
+
+    void add(Entity entity) {
+        entity.setQuerySlot(index, entities.size);
+        entities.add(entity);
+        entity.setQueryMembership(entity.getQueryMembership() | membershipBit);
+    }
+
+    void remove(Entity entity) {
+        int slot = entity.getQuerySlot(index);
+        Entity last = entities.pop();
+        if (last != entity) {
+            entities.set(slot, last);
+            last.setQuerySlot(index, slot);
+        }
+        entity.setQueryMembership(entity.getQueryMembership() & ~membershipBit);
+    }
+
+    void clear() {
+        for (int i = 0; i < entities.size; i++) {
+            Entity e = entities.get(i);
+            e.setQueryMembership(e.getQueryMembership() & ~membershipBit);
+        }
+        entities.clear();
+    }
+
+    public int size() {
+        return entities.size;
+    }
+
+    public Entity get(int index) {
+        return entities.get(index);
+    }
+}
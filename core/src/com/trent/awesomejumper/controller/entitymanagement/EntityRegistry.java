@@ -0,0 +1,116 @@
+package com.trent.awesomejumper.controller.entitymanagement;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.trent.awesomejumper.engine.entity.Entity;
+
+import java.util.Arrays;
+
+/**
+ * Slot map holding all entities registered in the world, addressed by generational handles.
+ * A handle packs the slot of the entity in its lower bits and the generation of the slot in its
+ * upper bits. Removing an entity frees its slot for reuse and increments the generation of the
+ * slot, so old handles to it no longer resolve. Lookups are a single array access.
+ * The handle of an entity is its ID, see {@link Entity#getID()}.
+ */
+public class EntityRegistry {
+
+    // MEMBERS & INSTANCES
+    // ---------------------------------------------------------------------------------------------
+
+    public static final int NO_HANDLE = -1;
+
+    private static final int SLOT_BITS = 20;
+    private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+    private static final int GENERATION_MASK = 0x7FF;       // handles stay positive
+    private static final int INITIAL_CAPACITY = 128;
+
+    private Entity[] slots = new Entity[INITIAL_CAPACITY];
+    private int[] generations = new int[INITIAL_CAPACITY];
+    private IntArray freeSlots = new IntArray();
+    private int usedSlots = 0;                              // slots handed out at least once
+    private int size = 0;
+
+    // METHODS & FUNCTIONS
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Stores the entity in a free slot and sets its ID to the new handle.
+     *
+     * @return the handle of the entity
+     */
+    public int add(Entity entity) {
+        int slot;
+        if (freeSlots.size > 0) {
+            slot = freeSlots.pop();
+        } else {
+            if (usedSlots > SLOT_MASK)
+                throw new IllegalArgumentException("ENTITY REGISTRY IS FULL. MAXIMUM: " + (SLOT_MASK + 1));
+            slot = usedSlots++;
+            ensureCapacity(usedSlots);
+        }
+        slots[slot] = entity;
+        size++;
+
+        int handle = generations[slot] << SLOT_BITS | slot;
+        entity.setID(handle);
+        return handle;
+    }
+
+    /**
+     * Frees the slot of the entity. Its handle becomes stale.
+     */
+    public void remove(Entity entity) {
+        if (!contains(entity))
+            return;
+        int slot = entity.getID() & SLOT_MASK;
+        slots[slot] = null;
+        generations[slot] = (generations[slot] + 1) & GENERATION_MASK;
+        freeSlots.add(slot);
+        size--;
+    }
+
+    /**
+     * Returns the entity the handle points to or null, if the handle is stale or invalid.
+     */
+    public Entity get(int handle) {
+        if (handle < 0)
+            return null;
+        int slot = handle & SLOT_MASK;
+        if (slot >= usedSlots || generations[slot] != handle >>> SLOT_BITS)
+            return null;
+        return slots[slot];
+    }
+
+    /**
+     * Returns the slot of a handle. The slot stays the same for the whole lifetime of an entity.
+     */
+    public static int slotOf(int handle) {
+        return handle & SLOT_MASK;
+    }
+
+    public boolean contains(Entity entity) {
+        return get(entity.getID()) == entity;
+    }
+
+    /**
+     * Removes all entities. Generations are kept, so handles issued before stay stale.
+     */
+    public void clear() {
+        for (int slot = 0; slot < usedSlots; slot++) {
+            if (slots[slot] != null)
+                remove(slots[slot]);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= slots.length)
+            return;
+        int newCapacity = Math.max(capacity, slots.length * 2);
+        slots = Arrays.copyOf(slots, newCapacity);
+        generations = Arrays.copyOf(generations, newCapacity);
+    }
+}
@@ -0,0 +1,98 @@
+package com.trent.awesomejumper.controller.entitymanagement;
+
+/**
+ * Diagnostics gathered when the cell size of the spatial hashing grid is tuned.
+ * Holds the occupancy of the grid in use, the extents of the entities and the estimated cost of
+ * every evaluated cell size. The cost of a cell size is the sum of
+ * - the entity/entity candidate pairs sharing a cell
+ * - the cell entries needed to bucket every entity
+ * Tiles are left out: world collisions look up the tiles under an entity directly, independent of
+ * the cell size.
+ */
+public class SpatialStatistics {
+
+    // MEMBERS & INSTANCES
+    // ---------------------------------------------------------------------------------------------
+
+    // Entity extents
+    public int entityCount;
+    public float meanExtent;
+    public float maxExtent;
+
+    // Occupancy of the grid in use
+    public int occupiedCells;
+    public float meanOccupancy;         // mean number of entities per occupied cell
+    public int maxOccupancy;
+
+    // Estimated costs per evaluated cell size
+    public final int[] gridSizes;
+    public final long[] candidatePairs;
+    public final long[] cellEntries;
+
+    public int previousGridSize;
+    public int chosenGridSize;
+
+    // CONSTRUCTOR
+    // ---------------------------------------------------------------------------------------------
+
+    public SpatialStatistics(int[] gridSizes) {
+        this.gridSizes = gridSizes;
+        this.candidatePairs = new long[gridSizes.length];
+        this.cellEntries = new long[gridSizes.length];
+    }
+
+    // METHODS & FUNCTIONS
+    // ---------------------------------------------------------------------------------------------
+
+    public long getCost(int i) {
+        return candidatePairs[i] + cellEntries[i];
+    }
+
+    /**
+     * Returns the index of the given cell size in the evaluated sizes, -1 if it was not evaluated.
+     */
+    public int indexOf(int gridSize) {
+        for (int i = 0; i < gridSizes.length; i++) {
+            if (gridSizes[i] == gridSize)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the evaluated cell size with the lowest cost. Smaller sizes win ties.
+     */
+    public int getCheapestIndex() {
+        int best = 0;
+        for (int i = 1; i < gridSizes.length; i++) {
+            if (getCost(i) < getCost(best))
+                best = i;
+        }
+        return best;
+    }
+
+    /**
+     * Short summary for the debug console: cell size and candidate pairs before and after.
+     */
+    public String getSummary() {
+        int before = indexOf(previousGridSize);
+        int after = indexOf(chosenGridSize);
+        return previousGridSize + " -> " + chosenGridSize + " PAIRS: "
+                + (before == -1 ? "-" : Long.toString(candidatePairs[before])) + " -> " + candidatePairs[after];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("SPATIAL GRID REPORT\n");
+        builder.append(String.format("ENTITIES: %d  EXTENT MEAN: %.3f  MAX: %.3f%n", entityCount, meanExtent, maxExtent));
+        builder.append(String.format("OCCUPIED CELLS: %d  OCCUPANCY MEAN: %.3f  MAX: %d%n", occupiedCells, meanOccupancy, maxOccupancy));
+        for (int i = 0; i < gridSizes.length; i++) {
+            builder.append(String.format("SIZE %2d  PAIRS: %6d  ENTRIES: %6d  COST: %7d%s%n",
+                    gridSizes[i], candidatePairs[i], cellEntries[i], getCost(i),
+                    gridSizes[i] == chosenGridSize ? "  <" : ""));
+        }
+        builder.append("CELL SIZE: ").append(getSummary());
+        return builder.toString();
+    }
+}
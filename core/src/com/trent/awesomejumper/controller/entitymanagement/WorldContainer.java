@@ -2,31 +2,37 @@ package com.trent.awesomejumper.controller.entitymanagement;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+import com.trent.awesomejumper.controller.collision.Broadphase;
+import com.trent.awesomejumper.controller.collision.DynamicTreeBroadphase;
+import com.trent.awesomejumper.controller.collision.SpatialHashBroadphase;
+import com.trent.awesomejumper.controller.collision.SweepAndPruneBroadphase;
 import com.trent.awesomejumper.controller.levelgeneration.RandomLevelGenerator;
 import com.trent.awesomejumper.engine.entity.Entity;
+import com.trent.awesomejumper.engine.modelcomponents.Body;
+import com.trent.awesomejumper.engine.physics.CollisionBox;
 import com.trent.awesomejumper.engine.physics.ProjectileRay;
 import com.trent.awesomejumper.engine.physics.Ray;
 import com.trent.awesomejumper.game.AwesomeJumperMain;
 import com.trent.awesomejumper.models.Player;
-import com.trent.awesomejumper.models.pickups.Pickup;
-import com.trent.awesomejumper.models.projectile.Projectile;
-import com.trent.awesomejumper.models.weapons.Weapon;
 import com.trent.awesomejumper.tiles.Tile;
+import com.trent.awesomejumper.utils.Profiler;
 import com.trent.awesomejumper.utils.Utils;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
+import static com.trent.awesomejumper.engine.modelcomponents.ModelComponent.ComponentID.BODY;
 import static com.trent.awesomejumper.engine.modelcomponents.ModelComponent.ComponentID.GRAPHICS;
 import static com.trent.awesomejumper.engine.modelcomponents.ModelComponent.ComponentID.HEALTH;
-import static com.trent.awesomejumper.utils.Utils.sub;
+import static com.trent.awesomejumper.engine.modelcomponents.ModelComponent.ComponentID.PROJECTILE;
+import static com.trent.awesomejumper.engine.modelcomponents.ModelComponent.ComponentID.WEAPON_COMPONENT;
 
 /**
  * Created by Sinthu on 12.06.2015.
@@ -43,10 +49,10 @@ public class WorldContainer {
     public static int renderNodes = 0;
     public static int registeredNodes = 0;
 
-    private static final float NEIGHBOURHOOD_RANGE = 2.0f;
+    public static final float NEIGHBOURHOOD_RANGE = 2.0f;
 
     /**
-     * The following maps and sets manage all entities in the world.
+     * The following registry, lists and queries manage all entities in the world.
      * Separate sets are needed for the collision detection to work properly, as there is a need
      * to differentiate between different types of entities.
      */
@@ -54,41 +60,71 @@ public class WorldContainer {
     private int SPATIAL_WIDTH = 0;
     private int SPATIAL_HEIGHT = 0;
 
-    // Map containing all entities in the game. Maps entity IDs with entities.
-    private HashMap<Integer, Entity> entities = new HashMap<>();
+    // Registry of all entities in the game. Resolves entity handles to entities.
+    private EntityRegistry entityRegistry = new EntityRegistry();
+    // Dense storage of all entities used for iteration
+    private EntityList entityList = new EntityList();
+    // Entities destroyed since the last garbage removal
+    private Array<Entity> removalQueue = new Array<>(false, 16);
 
-    // Map for spatial hashing
-    //  private HashMap<Vector2, Set<Object>> spatialHashingData = new HashMap<>();
-    private HashMap<Vector2, EntityTileContainer> spatialHashingData = new HashMap<>();
+    /**
+     * Dense grid of spatial hash cells. The cell with the integer coordinates (cx,cy) is stored
+     * at index cx + cy * SPATIAL_WIDTH. Its lower left corner in world coordinates is
+     * (cx * spatialGridSize, cy * spatialGridSize).
+     * The grid consists of two layers:
+     * - a dynamic layer holding the entities overlapping each cell, maintained while entities move
+     * - a static layer holding the collidable tiles of each cell, built once per level
+     */
+    private EntityCell[] spatialCells = new EntityCell[0];
+    private List<List<Tile>> staticTileLayer = Collections.emptyList();
+    private int staticTileCount = 0;
+
+    // Reusable cursor and duplicate filter stamp for queries
+    private CellRange queryRange = new CellRange();
+    private int queryStamp = 0;
+    private FloatArray knnDistances = new FloatArray();
+
+    /**
+     * Edge length of a hash cell in world units. Chosen from GRID_SIZE_CANDIDATES when a level is
+     * loaded and on demand, see {@link #tuneSpatialGrid()}. Only whole numbers are used, so every
+     * tile lies in exactly one cell.
+     */
+    public static final int DEFAULT_SPATIAL_HASH_GRID_SIZE = 2;
+    public static final int[] GRID_SIZE_CANDIDATES = {1, 2, 3, 4, 6, 8};
+    private int spatialGridSize = DEFAULT_SPATIAL_HASH_GRID_SIZE;
+    private boolean regridRequested = false;
+    private SpatialStatistics spatialStatistics;
 
-    private HashSet<Vector2> validHashIndexes = new HashSet<>();
-    public static final int SPATIAL_HASH_GRID_SIZE = 2;
+    // Broad phase of the entity/entity collision detection
+    private Broadphase broadphase;
 
 
-    // Subset containing all projectiles
-    private HashSet<Projectile> projectiles = new HashSet<>();
+    // Entity queries, kept up to date with the component masks of the entities
+    private EntityQueries entityQueries = new EntityQueries();
+
+    // Query containing all projectiles
+    private EntityQuery projectiles = entityQueries.register(PROJECTILE.mask, 0L);
 
     // TESTING RAYS
     private HashSet<Ray> rays = new HashSet<>();
     private HashSet<ProjectileRay> projectileRays = new HashSet<>();
 
-    // Subset containing all pickups (ammo, medikits,...)
-    private HashSet<Pickup> pickups = new HashSet<>();
-
-    // Subset containing all mobile entities. These are entities that are able to move
+    // Query containing all mobile entities. These are entities that are able to move
     // and be affected by explosions
-    private HashSet<Entity> mobileEntities = new HashSet<>();
+    private EntityQuery mobileEntities = entityQueries.register(BODY.mask, PROJECTILE.mask);
 
-    // Subset containing all dropped weapons the player can pick up.
-    private HashSet<Weapon> weaponDrops = new HashSet<>();
+    // Query containing all weapons, dropped or equipped
+    private EntityQuery weapons = entityQueries.register(WEAPON_COMPONENT.mask, 0L);
 
-    // Subset containing all living entities that can take damage
-    private HashSet<Entity> livingEntities = new HashSet<>();   // subset of all entities that can take damage
+    // Query containing all living entities that can take damage
+    private EntityQuery livingEntities = entityQueries.register(HEALTH.mask, 0L);
 
     private Player player;
 
     private ArrayList<Tile> renderTileList = new ArrayList<>();
-    private ArrayList<Entity> entitiesToBeDrawn = new ArrayList<>();
+    // Visible entities in drawing order, kept across frames to make re-sorting cheap
+    private Array<Entity> entitiesToBeDrawn = new Array<>(true, 64);
+    private Array<Entity> visibleEntities = new Array<>(false, 64);
     private ArrayList<Tile> collisionTiles = new ArrayList<>();
 
 
@@ -97,7 +133,7 @@ public class WorldContainer {
 
     // SPATIAL HASHING DEBUG
 
-    private HashSet<Vector2> hitHashCells = new HashSet<>();
+    private IntArray hitHashCells = new IntArray();
 
     private ArrayList<Vector2> penetrationPoints = new ArrayList<>();
     private ArrayList<Vector2> entityPenetrationPoints = new ArrayList<>();
@@ -108,13 +144,47 @@ public class WorldContainer {
     // ---------------------------------------------------------------------------------------------
 
     public WorldContainer() {
-        randomLevelGenerator = new RandomLevelGenerator();
+        this(RandomLevelGenerator.DEFAULT_SEED);
+    }
+
+    /**
+     * Generates the level and its entities from the given seed. The same seed always results in
+     * the same world.
+     * @param seed seed of the level generator
+     */
+    public WorldContainer(long seed) {
+        randomLevelGenerator = new RandomLevelGenerator(seed);
         randomLevelGenerator.init();
-        entities = randomLevelGenerator.load();
+        for (Entity e : randomLevelGenerator.load()) {
+            entityRegistry.add(e);
+            entityList.add(e);
+            entityQueries.update(e);
+        }
+        entityList.flush();
         player = randomLevelGenerator.getPlayer();
+        broadphase = createBroadphase(AwesomeJumperMain.getBroadphaseType());
         initSpatialData();
     }
 
+    /**
+     * Creates the broad phase used for entity/entity collision detection.
+     * @param type type of the broad phase
+     * @return the new broad phase
+     */
+    private Broadphase createBroadphase(Broadphase.Type type) {
+        Utils.log("BROADPHASE", type.toString());
+        switch (type) {
+            case SPATIAL_HASH:
+                return new SpatialHashBroadphase(this);
+            case SWEEP_AND_PRUNE:
+                return new SweepAndPruneBroadphase();
+            case DYNAMIC_TREE:
+                return new DynamicTreeBroadphase();
+            default:
+                throw new IllegalArgumentException("UNKNOWN BROADPHASE TYPE: " + type);
+        }
+    }
+
 
     // ---------------------------------------------------------------------------------------------
     // SPATIAL HASHING METHODS
@@ -124,308 +194,546 @@ public class WorldContainer {
     // ---------------------------------------------------------------------------------------------
 
     /**
-     * Clears the spatial hashing data structure.
+     * Moves an entity between the cells of the spatial hashing data structure, but only if the
+     * range of cells covered by its bounds has changed since it was last bucketed. Entities that
+     * are not part of the grid yet are inserted. Only the re-bucketing is profiled as SPATIAL_UPDATE,
+     * the check for a changed range is part of the integration.
+     * Called by the body of the entity after each positional update and on registration.
+     *
+     * @param entity Entity to be re-bucketed.
      */
-    private void clearSpatialHashData() {
+    public void updateEntityCells(Entity entity) {
+        if (!entity.has(BODY))
+            return;
+
+        Body body = entity.getBody();
+        CollisionBox bounds = body.getBounds();
+        float x = bounds.getPosition().x + bounds.getOffset().x;
+        float y = bounds.getPosition().y + bounds.getOffset().y;
+
+        int startX = Math.max(getCellX(x), 0);
+        int startY = Math.max(getCellY(y), 0);
+        int endX = Math.min(getCellX(x + entity.getWidth()), SPATIAL_WIDTH - 1);
+        int endY = Math.min(getCellY(y + entity.getHeight()), SPATIAL_HEIGHT - 1);
+
+        if (startX > endX || startY > endY) {
+            removeEntityFromSpatialHashingData(entity);
+            Utils.log(String.format("ERROR ADDING THE FOLLOWING ENTITY TO THE LOCATION %1s" +
+                    "IN THE SPATIAL HASHING DATA: %2s", Utils.printVec(x, y), entity.toString()));
+            return;
+        }
+
+        // Nothing to do as long as the entity stays inside the same cells.
+        if (body.isInSpatialGrid() && body.getCellStartX() == startX && body.getCellStartY() == startY
+                && body.getCellEndX() == endX && body.getCellEndY() == endY)
+            return;
 
-        spatialHashingData.clear();
-        for (int x = 0; x < SPATIAL_WIDTH; x++) {
-            for (int y = 0; y < SPATIAL_HEIGHT; y++) {
-                spatialHashingData.put(new Vector2(x * SPATIAL_HASH_GRID_SIZE, y * SPATIAL_HASH_GRID_SIZE), new EntityTileContainer());
+        Profiler.begin(Profiler.Phase.SPATIAL_UPDATE);
+        removeEntityFromSpatialHashingData(entity);
+        for (int cx = startX; cx <= endX; cx++) {
+            for (int cy = startY; cy <= endY; cy++) {
+                spatialCells[cx + cy * SPATIAL_WIDTH].addEntity(entity);
             }
         }
+        body.setSpatialCellRange(startX, startY, endX, endY);
+        Profiler.end(Profiler.Phase.SPATIAL_UPDATE);
     }
 
     /**
-     * Adds an entity to the corresponding cell in the spatial hashing data structure.
+     * Removes an entity from all cells it currently occupies in the spatial hashing data structure.
+     * Called by the garbage removal for destroyed entities.
      *
-     * @param entity Entity to be added.
-     */
-    private void addEntityToSpatialHashingData(Entity entity) {
-        // generating a list of all spatial indexes the current entity covers
-        HashSet<Vector2> spatialIndexes = getSpatialIndexes(entity);
-        for (Vector2 index : spatialIndexes) {
-            if (spatialHashingData.containsKey(index)) {
-                spatialHashingData.get(index).addEntity(entity);
-            } else {
-                Utils.log(String.format("ERROR ADDING THE FOLLOWING ENTITY TO THE LOCATION %1s" +
-                        "IN THE SPATIAL HASHING DATA: %2s", index.toString(), entity.toString()));
+     * @param entity Entity to be removed.
+     */
+    public void removeEntityFromSpatialHashingData(Entity entity) {
+        if (!entity.has(BODY))
+            return;
+
+        Body body = entity.getBody();
+        if (!body.isInSpatialGrid())
+            return;
+
+        for (int cx = body.getCellStartX(); cx <= body.getCellEndX(); cx++) {
+            for (int cy = body.getCellStartY(); cy <= body.getCellEndY(); cy++) {
+                spatialCells[cx + cy * SPATIAL_WIDTH].removeEntity(entity);
             }
         }
+        body.clearSpatialCellRange();
     }
 
     /**
-     * Adds a tile to the corresponding cell in the spatial hashing data structure.
-     *
-     * @param t Tile to be added.
-     */
-    private void addTileToSpatialHashingData(Tile t) {
-        // generating a list of all spatial indexes the current tile covers
-        HashSet<Vector2> spatialIndexes = getSpatialIndexes(t);
-        for (Vector2 index : spatialIndexes) {
-            if (spatialHashingData.containsKey(index)) {
-                spatialHashingData.get(index).addTile(t);
-            } else {
+     * Builds the static tile layer of the spatial hashing data structure. Every collidable tile of
+     * the level is sorted into the cell containing its position. As walls never move, the layer is
+     * built once when the level is loaded and is immutable afterwards.
+     */
+    private void buildStaticTileLayer() {
+        List<List<Tile>> buckets = new ArrayList<>(SPATIAL_WIDTH * SPATIAL_HEIGHT);
+        for (int i = 0; i < SPATIAL_WIDTH * SPATIAL_HEIGHT; i++) {
+            buckets.add(null);
+        }
+
+        staticTileCount = 0;
+        for (Tile t : randomLevelGenerator.getCollidableTiles()) {
+            int cx = getCellX(t.getPosition().x);
+            int cy = getCellY(t.getPosition().y);
+            if (!isValidCell(cx, cy)) {
                 Utils.log(String.format("ERROR ADDING THE FOLLOWING TILE TO THE LOCATION %1s" +
-                        "IN THE SPATIAL HASHING DATA: %2s", index.toString(), t.toString()));
+                        "IN THE SPATIAL HASHING DATA: %2s", Utils.printVec(cx, cy), t.toString()));
+                continue;
             }
+            int index = cx + cy * SPATIAL_WIDTH;
+            if (buckets.get(index) == null)
+                buckets.set(index, new ArrayList<Tile>(spatialGridSize * spatialGridSize));
+            buckets.get(index).add(t);
+            staticTileCount++;
+        }
+
+        for (int i = 0; i < buckets.size(); i++) {
+            List<Tile> bucket = buckets.get(i);
+            buckets.set(i, bucket == null ? Collections.<Tile>emptyList() : Collections.unmodifiableList(bucket));
         }
+        staticTileLayer = Collections.unmodifiableList(buckets);
     }
 
     /**
-     * Initializes the spatial data structure. Adds an empty EntityTileContainer to each cell.
-     *
-     * @link EntityTileContainer
+     * Initializes the spatial data structure when a level is loaded. Tunes the cell size for the
+     * new level, builds the grid and fills the broad phase.
      */
     private void initSpatialData() {
+        // The grid is built from the entity list, so pending registrations have to be applied
+        entityList.flush();
+        spatialStatistics = gatherSpatialStatistics();
+        spatialGridSize = spatialStatistics.chosenGridSize;
+        Utils.log(spatialStatistics.toString());
+        buildSpatialGrid();
+
+        broadphase.clear();
+        for (int i = 0; i < entityList.size(); i++) {
+            Entity e = entityList.get(i);
+            broadphase.add(e);
+        }
+    }
 
-        SPATIAL_WIDTH = (randomLevelGenerator.getLevelWidth() / SPATIAL_HASH_GRID_SIZE) + 1;
-        SPATIAL_HEIGHT = (randomLevelGenerator.getLevelHeight() / SPATIAL_HASH_GRID_SIZE) + 1;
+    /**
+     * Builds the grid for the current cell size. Adds an empty EntityCell to each cell, builds
+     * the static tile layer and adds each entity to the cells it touches.
+     *
+     * @link EntityCell
+     */
+    private void buildSpatialGrid() {
+
+        SPATIAL_WIDTH = (randomLevelGenerator.getLevelWidth() / spatialGridSize) + 1;
+        SPATIAL_HEIGHT = (randomLevelGenerator.getLevelHeight() / spatialGridSize) + 1;
 
         Utils.log("SPATIAL DIMENSIONS:  " + Integer.toString(SPATIAL_WIDTH) + " :   " + Integer.toString(SPATIAL_HEIGHT));
 
         /**
-         * Generate keys at valid Vector2 positions.
-         * Every multiple of SPATIAL_HASH_GRID_SIZE is a valid key in the spatial hashing data structure.
+         * Every cell of the grid gets its own container. Valid cell coordinates range from
+         * (0,0) to (SPATIAL_WIDTH - 1, SPATIAL_HEIGHT - 1).
          */
-        for (int x = 0; x < SPATIAL_WIDTH; x++) {
-            for (int y = 0; y < SPATIAL_HEIGHT; y++) {
-                spatialHashingData.put(new Vector2(x * SPATIAL_HASH_GRID_SIZE, y * SPATIAL_HASH_GRID_SIZE), new EntityTileContainer());
-            }
-        }
-
-
-        // REGISTER ALL VALID HASH INDEXES
-        validHashIndexes.addAll(spatialHashingData.keySet());
-
-
-        // DEBUG
-        Utils.log("LIST OF VALID SPATIAL INDEXES: \n");
-        int i = 0;
-        for (Vector2 v : spatialHashingData.keySet()) {
-            Utils.log("VALID INDEX " + String.format("%05d", i), v.toString());
-            i++;
+        spatialCells = new EntityCell[SPATIAL_WIDTH * SPATIAL_HEIGHT];
+        for (int i = 0; i < spatialCells.length; i++) {
+            spatialCells[i] = new EntityCell();
         }
+        buildStaticTileLayer();
 
         /**
-         * Add each entity/tile to the Vector2-keys they touch with their Vec2-position.
+         * Add each entity to the cells it touches with its Vec2-position.
          */
-        for (Entity e : entities.values()) {
-            addEntityToSpatialHashingData(e);
+        for (int i = 0; i < entityList.size(); i++) {
+            Entity e = entityList.get(i);
+            e.getBody().clearSpatialCellRange();
+            updateEntityCells(e);
         }
 
+    }
 
-        for (Tile t : renderTileList) {
-            addTileToSpatialHashingData(t);
-        }
+    // CELL SIZE TUNING
+    // ---------------------------------------------------------------------------------------------
 
+    /**
+     * Requests the cell size of the grid to be tuned again. The grid is not touched right away,
+     * as a query might be running. The request is carried out by
+     * {@link #applyPendingRegrid()} at the start of the next frame.
+     */
+    public void requestSpatialRegrid() {
+        regridRequested = true;
     }
 
     /**
-     * Updates the spatial hashing ds. Iterates through all entities and tiles,
-     * calculates their place in the hashing ds and adds them to their respective
-     * collection / HashSet.
-     * TODO: might be optimized by only considering entities that moved during the last frame.
+     * Carries out a pending re-grid request. Called by the WorldController before any entity is
+     * updated, so no query or iteration over the cells can be interrupted.
      */
-    public void updateSpatialHashingData() {
-        clearSpatialHashData();
-
-        for (Entity e : entities.values()) {
-            addEntityToSpatialHashingData(e);
-        }
-
-        for (Tile t : randomLevelGenerator.getCollidableTiles()) {
-            addTileToSpatialHashingData(t);
-        }
+    public void applyPendingRegrid() {
+        if (!regridRequested)
+            return;
+        regridRequested = false;
+        tuneSpatialGrid();
     }
 
     /**
-     * Gets a list of indexes for the spatial data structure. The list of indexes represent the
-     * quadrants an entity is positioned in.
-     * An entity can take up to 4 spatial indexes if its hitbox happens to overlap all of them.
+     * Gathers statistics about the entities in the world, picks the cheapest cell size and
+     * rebuilds the grid if the size changed.
      *
-     * @param x x position of the entity / tile
-     * @param y y position of the entity / tile
-     * @param w width of the entity / tile
-     * @param h height of the entity / tile
-     * @return HashSet of Vector2 indexes
+     * @return the statistics the decision was based on
      */
-    private HashSet<Vector2> getSpatialIndexes(float x, float y, float w, float h) {
-
-        /*Utils.log("ENTITY/TILE Position ", Utils.printVec(x,y));
-        Utils.log("ENTITY/TILE Width ", Float.toString(w));
-        Utils.log("ENTITY/TILE Height ", Float.toString(h));*/
-
-        int spatialX = (int) Math.floor(x);
-        int spatialY = (int) Math.floor(y);
-        int spatialWx = (int) Math.floor(x + w);
-        int spatialHy = (int) Math.floor(y + h);
-
-        /*Utils.log("SPATIAL LOWER X BOUND", Integer.toString(spatialX));
-        Utils.log("SPATIAL LOWER Y BOUND", Integer.toString(spatialY));
-        Utils.log("SPATIAL HIGHER X BOUND", Integer.toString(spatialWx));
-        Utils.log("SPATIAL HIGHER Y BOUND", Integer.toString(spatialHy));*/
-
-        spatialX -= spatialX % SPATIAL_HASH_GRID_SIZE;
-        spatialY -= spatialY % SPATIAL_HASH_GRID_SIZE;
-        spatialWx -= spatialWx % SPATIAL_HASH_GRID_SIZE;
-        spatialHy -= spatialHy % SPATIAL_HASH_GRID_SIZE;
-
-        HashSet<Vector2> result = new HashSet<>();
+    public SpatialStatistics tuneSpatialGrid() {
+        spatialStatistics = gatherSpatialStatistics();
+        if (spatialStatistics.chosenGridSize != spatialGridSize) {
+            spatialGridSize = spatialStatistics.chosenGridSize;
+            buildSpatialGrid();
+        }
+        Utils.log(spatialStatistics.toString());
+        return spatialStatistics;
+    }
 
-        result.add(new Vector2(spatialX, spatialY));
-        result.add(new Vector2(spatialWx, spatialY));
-        result.add(new Vector2(spatialX, spatialHy));
-        result.add(new Vector2(spatialWx, spatialHy));
+    /**
+     * Measures the occupancy of the grid in use and the extents of all entities. Then every
+     * candidate cell size is evaluated by bucketing the entities into a count grid
+     * of that size and summing up the expected work, see {@link SpatialStatistics}.
+     */
+    private SpatialStatistics gatherSpatialStatistics() {
+        SpatialStatistics stats = new SpatialStatistics(GRID_SIZE_CANDIDATES);
+        stats.previousGridSize = spatialGridSize;
+
+        // Occupancy of the current grid
+        int totalOccupancy = 0;
+        for (EntityCell cell : spatialCells) {
+            int n = cell.getEntities().size;
+            if (n == 0)
+                continue;
+            stats.occupiedCells++;
+            totalOccupancy += n;
+            stats.maxOccupancy = Math.max(stats.maxOccupancy, n);
+        }
+        stats.meanOccupancy = stats.occupiedCells == 0 ? 0f : (float) totalOccupancy / stats.occupiedCells;
 
+        // Entity extents
+        float extentSum = 0f;
+        for (int i = 0; i < entityList.size(); i++) {
+            Entity e = entityList.get(i);
+            if (!e.has(BODY))
+                continue;
+            float extent = Math.max(e.getWidth(), e.getHeight());
+            extentSum += extent;
+            stats.maxExtent = Math.max(stats.maxExtent, extent);
+            stats.entityCount++;
+        }
+        stats.meanExtent = stats.entityCount == 0 ? 0f : extentSum / stats.entityCount;
+
+        // Expected work per cell size
+        for (int i = 0; i < GRID_SIZE_CANDIDATES.length; i++) {
+            int size = GRID_SIZE_CANDIDATES[i];
+            int width = randomLevelGenerator.getLevelWidth() / size + 1;
+            int height = randomLevelGenerator.getLevelHeight() / size + 1;
+            int[] entityCounts = new int[width * height];
+
+            for (int n = 0; n < entityList.size(); n++) {
+                Entity e = entityList.get(n);
+                if (!e.has(BODY))
+                    continue;
+                CollisionBox bounds = e.getBounds();
+                float x = bounds.getPosition().x + bounds.getOffset().x;
+                float y = bounds.getPosition().y + bounds.getOffset().y;
+                int startX = Math.max((int) Math.floor(x / size), 0);
+                int startY = Math.max((int) Math.floor(y / size), 0);
+                int endX = Math.min((int) Math.floor((x + e.getWidth()) / size), width - 1);
+                int endY = Math.min((int) Math.floor((y + e.getHeight()) / size), height - 1);
+                for (int cx = startX; cx <= endX; cx++) {
+                    for (int cy = startY; cy <= endY; cy++) {
+                        entityCounts[cx + cy * width]++;
+                        stats.cellEntries[i]++;
+                    }
+                }
+            }
 
-        /**
-         * Check, if the generated indexes in the result set are valid.
-         * Removes all invalid indexes from the result.
-         */
-        for(Iterator<Vector2> iterator = result.iterator(); iterator.hasNext();) {
-            Vector2 index = iterator.next();
-            if(!validHashIndexes.contains(index)) {
-                iterator.remove();
+            for (int n : entityCounts) {
+                stats.candidatePairs[i] += (long) n * (n - 1) / 2;
             }
         }
 
+        stats.chosenGridSize = GRID_SIZE_CANDIDATES[stats.getCheapestIndex()];
+        return stats;
+    }
 
-        return result;
+    /**
+     * Fills the given range with the cells covered by the rectangle (x,y,w,h), clipped to the grid.
+     * This is the allocation free way of walking the spatial data structure:
+     * <pre>
+     *     for (int cx = range.startX; cx <= range.endX; cx++)
+     *         for (int cy = range.startY; cy <= range.endY; cy++)
+     * </pre>
+     *
+     * @param x     x position of the entity / tile
+     * @param y     y position of the entity / tile
+     * @param w     width of the entity / tile
+     * @param h     height of the entity / tile
+     * @param range range to be filled
+     * @return the range passed in
+     */
+    public CellRange getCellRange(float x, float y, float w, float h, CellRange range) {
+        return range.set(Math.max(getCellX(x), 0), Math.max(getCellY(y), 0),
+                Math.min(getCellX(x + w), SPATIAL_WIDTH - 1), Math.min(getCellY(y + h), SPATIAL_HEIGHT - 1));
     }
 
-    public HashSet<Vector2> getSpatialIndexes(Entity e) {
+    public CellRange getCellRange(Entity e, CellRange range) {
         /**
          * Needs to use the position and offset of the entities bounding hitbox to generate
          * correct results.
          */
-        Vector2 positionAndOffset = e.getBody().getBounds().getPositionAndOffset().cpy();
-        return getSpatialIndexes(positionAndOffset.x, positionAndOffset.y, e.getWidth(), e.getHeight());
+        CollisionBox bounds = e.getBounds();
+        return getCellRange(bounds.getPosition().x + bounds.getOffset().x,
+                bounds.getPosition().y + bounds.getOffset().y, e.getWidth(), e.getHeight(), range);
     }
 
-
     /**
-     * Returns a set containing one spatial hash cell index for a given tile t.
-     * @param t tile
-     * @return hash cell index of the tile.
+     * Returns the x coordinate of the hash cell containing the world coordinate x.
+     * @param x world x coordinate
+     * @return cell x coordinate, may lie outside of the grid.
      */
-    public HashSet<Vector2> getSpatialIndexes(Tile t) {
-
-        float x = t.getPosition().x;
-        float y = t.getPosition().y;
-        int spatialX = (int) Math.floor(x);
-        int spatialY = (int) Math.floor(y);
-        spatialX -= spatialX % SPATIAL_HASH_GRID_SIZE;
-        spatialY -= spatialY % SPATIAL_HASH_GRID_SIZE;
-        HashSet<Vector2> result = new HashSet<>();
-        result.add(new Vector2(spatialX, spatialY));
-        return result;
+    public int getCellX(float x) {
+        return (int) Math.floor(x / spatialGridSize);
+    }
 
+    /**
+     * Returns the y coordinate of the hash cell containing the world coordinate y.
+     * @param y world y coordinate
+     * @return cell y coordinate, may lie outside of the grid.
+     */
+    public int getCellY(float y) {
+        return (int) Math.floor(y / spatialGridSize);
     }
 
-    public Vector2 getSpatialIndex(float x, float y) {
-        int spatialX = (int) Math.floor(x);
-        int spatialY = (int) Math.floor(y);
+    /**
+     * Returns the flat index of the cell (cx,cy). Does not validate the coordinates.
+     */
+    public int getCellIndex(int cx, int cy) {
+        return cx + cy * SPATIAL_WIDTH;
+    }
 
-        spatialX -= spatialX % SPATIAL_HASH_GRID_SIZE;
-        spatialY -= spatialY % SPATIAL_HASH_GRID_SIZE;
-        return new Vector2(spatialX, spatialY);
+    public int getCellXForIndex(int index) {
+        return index % SPATIAL_WIDTH;
     }
 
-    public Vector2 getSpatialIndex(Vector2 v) {
-        return getSpatialIndex(v.x,v.y);
+    public int getCellYForIndex(int index) {
+        return index / SPATIAL_WIDTH;
     }
 
     /**
      * Gathers all entities near a given entity e from the spatial hashing data structure.
+     * An entity spanning multiple cells is added only once. Duplicates are filtered by stamping
+     * the bodies with the id of the current query, so no set is needed.
      *
-     * @param e entity whose neighbourhood we are interested in
-     * @return set of nearby entities.
+     * @param e      entity whose neighbourhood we are interested in
+     * @param result buffer receiving the nearby entities, cleared before use
+     * @return the buffer passed in
      */
-    public HashSet<Entity> getEntitiesNearby(Entity e) {
+    public Array<Entity> getEntitiesNearby(Entity e, Array<Entity> result) {
+        result.clear();
+        getCellRange(e, queryRange);
+        int stamp = nextQueryStamp();
+
+        for (int cx = queryRange.startX; cx <= queryRange.endX; cx++) {
+            for (int cy = queryRange.startY; cy <= queryRange.endY; cy++) {
+                collectEntities(spatialCells[cx + cy * SPATIAL_WIDTH], stamp, result);
+            }
+        }
+        return result;
+    }
 
-        HashSet<Entity> result = new HashSet<>();
-        for (Vector2 index : getSpatialIndexes(e)) {
-            EntityTileContainer container = spatialHashingData.get(index);
-            result.addAll(container.entities);
+    /**
+     * Gathers all entities from the cells covered by the rectangle (x,y,w,h).
+     *
+     * @param result buffer receiving the entities, cleared before use
+     * @return the buffer passed in
+     */
+    public Array<Entity> getEntitiesInArea(float x, float y, float w, float h, Array<Entity> result) {
+        result.clear();
+        getCellRange(x, y, w, h, queryRange);
+        int stamp = nextQueryStamp();
+
+        for (int cx = queryRange.startX; cx <= queryRange.endX; cx++) {
+            for (int cy = queryRange.startY; cy <= queryRange.endY; cy++) {
+                collectEntities(spatialCells[cx + cy * SPATIAL_WIDTH], stamp, result);
+            }
         }
         return result;
     }
 
     /**
-     * Gathers all tiles near a given entity e from the spatial hashing data structure.
+     * Gathers all entities from the cells crossed by the segment start -> end. The cells are
+     * walked in the order the segment passes them, stepping to the x or y neighbour depending on
+     * which cell border is crossed first.
      *
-     * @param e entity whose neighbourhood we are interested in
-     * @return set of nearby tiles.
+     * @param start  start of the segment
+     * @param end    end of the segment
+     * @param result buffer receiving the entities, cleared before use
+     * @return the buffer passed in
      */
-    public HashSet<Tile> getTilesNearby(Entity e) {
-        HashSet<Tile> result = new HashSet<>();
-        for (Vector2 index : getSpatialIndexes(e)) {
-            EntityTileContainer container = spatialHashingData.get(index);
-            result.addAll(container.tiles);
+    public Array<Entity> getEntitiesAlongSegment(Vector2 start, Vector2 end, Array<Entity> result) {
+        result.clear();
+        int stamp = nextQueryStamp();
+
+        int cx = getCellX(start.x);
+        int cy = getCellY(start.y);
+        int endCx = getCellX(end.x);
+        int endCy = getCellY(end.y);
+
+        float dx = end.x - start.x;
+        float dy = end.y - start.y;
+        int stepX = dx > 0 ? 1 : -1;
+        int stepY = dy > 0 ? 1 : -1;
 
+        /**
+         * tMax: fraction of the segment at which the next cell border is crossed.
+         * tDelta: fraction of the segment needed to cross a whole cell.
+         */
+        float tDeltaX = dx != 0 ? spatialGridSize / Math.abs(dx) : Float.MAX_VALUE;
+        float tDeltaY = dy != 0 ? spatialGridSize / Math.abs(dy) : Float.MAX_VALUE;
+        float tMaxX = dx != 0 ? ((dx > 0 ? cx + 1 : cx) * spatialGridSize - start.x) / dx : Float.MAX_VALUE;
+        float tMaxY = dy != 0 ? ((dy > 0 ? cy + 1 : cy) * spatialGridSize - start.y) / dy : Float.MAX_VALUE;
+
+        while (true) {
+            if (isValidCell(cx, cy))
+                collectEntities(spatialCells[cx + cy * SPATIAL_WIDTH], stamp, result);
+            if ((cx == endCx && cy == endCy) || (tMaxX > 1f && tMaxY > 1f))
+                break;
+            if (tMaxX < tMaxY) {
+                cx += stepX;
+                tMaxX += tDeltaX;
+            } else {
+                cy += stepY;
+                tMaxY += tDeltaY;
+            }
         }
         return result;
     }
 
-    public HashSet<Entity> getEntitiesForCell(Vector2 index) {
+    /**
+     * Gathers all tiles near a given entity e from the static tile layer.
+     * Every tile belongs to exactly one cell, so no duplicates can occur.
+     *
+     * @param e      entity whose neighbourhood we are interested in
+     * @param result buffer receiving the nearby tiles, cleared before use
+     * @return the buffer passed in
+     */
+    public Array<Tile> getTilesNearby(Entity e, Array<Tile> result) {
+        result.clear();
+        getCellRange(e, queryRange);
+
+        for (int cx = queryRange.startX; cx <= queryRange.endX; cx++) {
+            for (int cy = queryRange.startY; cy <= queryRange.endY; cy++) {
+                List<Tile> tiles = staticTileLayer.get(cx + cy * SPATIAL_WIDTH);
+                for (int i = 0; i < tiles.size(); i++) {
+                    result.add(tiles.get(i));
+                }
+            }
+        }
+        return result;
+    }
 
-        if(!validHashIndexes.contains(index)) {
+    /**
+     * Adds all entities of a cell not yet stamped with the given query stamp to the result.
+     */
+    private void collectEntities(EntityCell cell, int stamp, Array<Entity> result) {
+        Array<Entity> cellEntities = cell.getEntities();
+        for (int i = 0; i < cellEntities.size; i++) {
+            Entity other = cellEntities.get(i);
+            Body body = other.getBody();
+            if (body.getQueryStamp() != stamp) {
+                body.setQueryStamp(stamp);
+                if (other.isAlive())
+                    result.add(other);
+            }
+        }
+    }
 
-            throw new IllegalArgumentException("THE INDEX " + index + "IS INVALID " +
-                    "THE FOLLOWING INDEXES ARE VALID:" + validHashIndexes.toString());
+    /**
+     * Returns a new stamp for duplicate filtering. Stamps start at 1, as bodies are created with 0.
+     */
+    private int nextQueryStamp() {
+        if (++queryStamp == 0)
+            queryStamp = 1;
+        return queryStamp;
+    }
 
+    /**
+     * Gathers the solid tiles overlapped by the bounds of an entity directly from the level data.
+     * Tiles are unit squares on the integer grid, so the overlapped tiles follow from the integer
+     * range spanned by the bounds. Passable tiles are skipped using the solidity bitmap of the level.
+     *
+     * @param e      entity whose bounds are tested
+     * @param result buffer receiving the tiles, cleared before use
+     * @return the buffer passed in
+     */
+    public Array<Tile> getSolidTilesOverlapping(Entity e, Array<Tile> result) {
+        result.clear();
+        CollisionBox bounds = e.getBounds();
+        float x = bounds.getPosition().x + bounds.getOffset().x;
+        float y = bounds.getPosition().y + bounds.getOffset().y;
+
+        int startX = (int) Math.floor(x);
+        int startY = (int) Math.floor(y);
+        int endX = (int) Math.floor(x + e.getWidth());
+        int endY = (int) Math.floor(y + e.getHeight());
+
+        for (int tx = startX; tx <= endX; tx++) {
+            for (int ty = startY; ty <= endY; ty++) {
+                if (randomLevelGenerator.isSolid(tx, ty))
+                    result.add(randomLevelGenerator.getTile(tx, ty));
+            }
         }
-
-        return spatialHashingData.get(index).getEntities();
+        return result;
     }
 
-    public HashSet<Tile> getTilesForCell(Vector2 index) {
+    /**
+     * Returns the entities currently overlapping a cell. The returned array must not be modified.
+     */
+    public Array<Entity> getEntitiesForCell(int cx, int cy) {
 
-        if(!validHashIndexes.contains(index)) {
+        if(!isValidCell(cx, cy)) {
 
-            throw new IllegalArgumentException("THE INDEX " + index + "IS INVALID " +
-                    "THE FOLLOWING INDEXES ARE VALID:" + validHashIndexes.toString());
+            throw new IllegalArgumentException("THE CELL (" + cx + "," + cy + ") IS INVALID. " +
+                    "VALID CELLS RANGE FROM (0,0) TO (" + (SPATIAL_WIDTH - 1) + "," + (SPATIAL_HEIGHT - 1) + ")");
 
         }
 
-        return spatialHashingData.get(index).getTiles();
+        return spatialCells[cx + cy * SPATIAL_WIDTH].getEntities();
     }
 
-
     /**
-     * Returns all entities for a set of hash cells.
-     * This method is used to
-     *
-     * @param hashIndexes set of hash cells.
-     * @return set of entities.
+     * Returns the collidable tiles of a cell from the static tile layer.
+     * The returned list is immutable.
      */
-    public ArrayList<Entity> gatherEntitiesFromCells(ArrayList<Vector2> hashIndexes) {
-        // Using a set to eliminate duplicates
-        HashSet<Entity> result = new HashSet<>();
-        for(Vector2 index : hashIndexes) {
-            result.addAll(getEntitiesForCell(index));
+    public List<Tile> getTilesForCell(int cx, int cy) {
+
+        if(!isValidCell(cx, cy)) {
+
+            throw new IllegalArgumentException("THE CELL (" + cx + "," + cy + ") IS INVALID. " +
+                    "VALID CELLS RANGE FROM (0,0) TO (" + (SPATIAL_WIDTH - 1) + "," + (SPATIAL_HEIGHT - 1) + ")");
+
         }
-        return new ArrayList<>(result);
+
+        return staticTileLayer.get(cx + cy * SPATIAL_WIDTH);
     }
 
 
     /**
-     * Returns, whether or not a given vector is a valid hash cell key.
-     * @param i index
-     * @return true, if the key exists, false otherwise.
+     * Returns, whether or not the given cell coordinates lie inside the grid.
+     * @param cx cell x coordinate
+     * @param cy cell y coordinate
+     * @return true, if the cell exists, false otherwise.
      */
-    public boolean isValid(Vector2 i) {
-        return validHashIndexes.contains(i);
+    public boolean isValidCell(int cx, int cy) {
+        return cx >= 0 && cy >= 0 && cx < SPATIAL_WIDTH && cy < SPATIAL_HEIGHT;
     }
 
     /**
      * Registers all entities and puts them in their respective collection
      */
     public void initAllEntities() {
-        for (Iterator<? extends Entity> it = entities.values().iterator(); it.hasNext(); ) {
-            Entity e = it.next();
-            e.register();
+        for (int i = 0; i < entityList.size(); i++) {
+            entityList.get(i).register();
         }
     }
 
@@ -464,7 +772,7 @@ public class WorldContainer {
         if (fovEndY > randomLevelGenerator.getLevelHeight())
             fovEndY = randomLevelGenerator.getLevelHeight();
 
-        renderTileList = new ArrayList<>();
+        renderTileList.clear();
         Tile tile;
 
         for (int x = fovStartX; x < fovEndX; x++) {
@@ -492,12 +800,17 @@ public class WorldContainer {
      * Returns only those entities visible to the players field of view to be rendered.
      * Orders the entities according to their y-position to render them properly on top of
      * each other.
+     * Candidates are only taken from the hash cells overlapping the field of view, so the cost
+     * depends on what is on screen and not on the size of the world. The list of the last frame is
+     * kept: entities still visible keep their order, new ones are appended and an insertion sort
+     * restores the order. As entities barely move between two frames, the list is almost sorted
+     * and the sort is close to linear.
      *
      * @param camW camera width
      * @param camH camera height
-     * @return ArrayList with entities
+     * @return list of entities in drawing order. Must not be modified.
      */
-    public ArrayList<Entity> getEntitiesToBeRendered(Vector2 position, float camW, float camH) {
+    public Array<Entity> getEntitiesToBeRendered(Vector2 position, float camW, float camH) {
         int fovStartX = (int) (position.x - camW / 2);
         int fovStartY = (int) (position.y - camH / 2);
 
@@ -515,34 +828,78 @@ public class WorldContainer {
         if (fovEndY > randomLevelGenerator.getLevelHeight())
             fovEndY = randomLevelGenerator.getLevelHeight();
 
-        for (Entity e : entities.values()) {
-            if (e.getBody().getPosition().x > fovStartX &&
-                    e.getBody().getPosition().x <= fovEndX &&
-                    e.getBody().getPosition().y > fovStartY &&
-                    e.getBody().getPosition().y <= fovEndY) {
-                if (!entitiesToBeDrawn.contains(e) && e.has(GRAPHICS))
-                    entitiesToBeDrawn.add(e);
-            } else {
-                entitiesToBeDrawn.remove(e);
+        /**
+         * Gather the visible entities from the cells overlapping the field of view. All of them
+         * are stamped with the visibility stamp.
+         */
+        visibleEntities.clear();
+        int visibleStamp = nextQueryStamp();
+        getCellRange(fovStartX, fovStartY, fovEndX - fovStartX, fovEndY - fovStartY, queryRange);
+        for (int cx = queryRange.startX; cx <= queryRange.endX; cx++) {
+            for (int cy = queryRange.startY; cy <= queryRange.endY; cy++) {
+                Array<Entity> cellEntities = spatialCells[cx + cy * SPATIAL_WIDTH].getEntities();
+                for (int i = 0; i < cellEntities.size; i++) {
+                    Entity e = cellEntities.get(i);
+                    Body body = e.getBody();
+                    if (body.getQueryStamp() == visibleStamp)
+                        continue;
+                    body.setQueryStamp(visibleStamp);
+                    if (e.isAlive() && e.has(GRAPHICS) &&
+                            body.getPosition().x > fovStartX &&
+                            body.getPosition().x <= fovEndX &&
+                            body.getPosition().y > fovStartY &&
+                            body.getPosition().y <= fovEndY)
+                        visibleEntities.add(e);
+                    else
+                        body.setQueryStamp(0);  // 0 is never issued, rejected means not visible
+                }
             }
         }
 
         /**
-         * Sort entitiesToBeDrawn by using a comparator that compares the y value of the
-         * entities positions and then reversing the whole list.
+         * Keep the entities of the last frame which are still visible in their order and stamp
+         * them again, so only the newly visible entities still carry the visibility stamp.
          */
-        Collections.sort(entitiesToBeDrawn, new Comparator<Entity>() {
-            @Override
-            public int compare(Entity e1, Entity e2) {
-                return Float.compare(e1.getPosition().y, e2.getPosition().y);
-            }
-        });
-        Collections.reverse(entitiesToBeDrawn);
-        renderNodes = entitiesToBeDrawn.size();
-        registeredNodes = entities.size();
+        int keptStamp = nextQueryStamp();
+        int kept = 0;
+        for (int i = 0; i < entitiesToBeDrawn.size; i++) {
+            Entity e = entitiesToBeDrawn.get(i);
+            if (e.getBody().getQueryStamp() != visibleStamp)
+                continue;
+            e.getBody().setQueryStamp(keptStamp);
+            entitiesToBeDrawn.set(kept++, e);
+        }
+        entitiesToBeDrawn.truncate(kept);
+
+        for (int i = 0; i < visibleEntities.size; i++) {
+            Entity e = visibleEntities.get(i);
+            if (e.getBody().getQueryStamp() == visibleStamp)
+                entitiesToBeDrawn.add(e);
+        }
+
+        sortByDepth(entitiesToBeDrawn);
+        renderNodes = entitiesToBeDrawn.size;
+        registeredNodes = entityRegistry.size();
         return entitiesToBeDrawn;
     }
 
+    /**
+     * Stable insertion sort by descending y position, so entities further up are drawn first.
+     * Runs in linear time on an already sorted list.
+     */
+    private void sortByDepth(Array<Entity> list) {
+        for (int i = 1; i < list.size; i++) {
+            Entity e = list.get(i);
+            float y = e.getPosition().y;
+            int j = i - 1;
+            while (j >= 0 && list.get(j).getPosition().y < y) {
+                list.set(j + 1, list.get(j));
+                j--;
+            }
+            list.set(j + 1, e);
+        }
+    }
+
 
     // ---------------------------------------------------------------------------------------------
     // ENTITY NEIGHBOURHOOD MANAGEMENT
@@ -550,122 +907,162 @@ public class WorldContainer {
 
 
     /**
-     * Updates the list of entities close to the specified entity e.
-     * The neighbourhood list describes the perimeter of radius 3 around the entity and is used by
-     * the collision controller to solve entity/entity collision.
+     * Gathers all alive entities whose center lies within the given radius around center.
+     * Only the cells overlapped by the bounding square of the circle are visited and distances are
+     * compared squared. As an entity is bucketed in every cell its bounds cover, the cell holding
+     * its center is always part of the visited range.
      *
-     * @param e entity
-     * @return modified HashSet with neighbours
-     * @deprecated
+     * @param center center of the query circle
+     * @param radius radius of the query circle
+     * @param sink   buffer receiving the entities, cleared before use
+     * @return the buffer passed in
      */
-
-    public HashSet<Entity> updatedEntityNeighbourHood(Entity e) {
-
-        HashSet<Entity> entityNeighbourhood = e.getBody().getEntityNeighbourHood();
-
-        for (Entity other : mobileEntities) {
-            if (other.equals(e))
-                continue;
-
-
-            float dst = sub(e.getBody().getCenter(), other.getBody().getCenter()).len(); // distance between entities
-            if (dst <= NEIGHBOURHOOD_RANGE) {
-                if (!entityNeighbourhood.contains(other) && other.getBody().isCollisionDetectionEnabled())
-                    entityNeighbourhood.add(other);
-
-                if (entityNeighbourhood.contains(other) && !other.getBody().isCollisionDetectionEnabled())
-                    entityNeighbourhood.remove(other);
-
-            } else {
-                entityNeighbourhood.remove(other);
+    public Array<Entity> queryRadius(Vector2 center, float radius, Array<Entity> sink) {
+        sink.clear();
+        getCellRange(center.x - radius, center.y - radius, 2 * radius, 2 * radius, queryRange);
+        int stamp = nextQueryStamp();
+        float radius2 = radius * radius;
+
+        for (int cx = queryRange.startX; cx <= queryRange.endX; cx++) {
+            for (int cy = queryRange.startY; cy <= queryRange.endY; cy++) {
+                Array<Entity> cellEntities = spatialCells[cx + cy * SPATIAL_WIDTH].getEntities();
+                for (int i = 0; i < cellEntities.size; i++) {
+                    Entity other = cellEntities.get(i);
+                    Body body = other.getBody();
+                    if (body.getQueryStamp() == stamp)
+                        continue;
+                    body.setQueryStamp(stamp);
+                    if (other.isAlive() && body.getCenter().dst2(center) <= radius2)
+                        sink.add(other);
+                }
             }
-
-
         }
-        return entityNeighbourhood;
+        return sink;
     }
 
-
-    // ---------------------------------------------------------------------------------------------
-    // REMOVAL OF DEAD ENTITIES
-    // ---------------------------------------------------------------------------------------------
-
     /**
-     * Removes all entities which have their alive flag set to false from all relevant collections.
-     * Modifies and cleans the global entity collection, the "toBeDrawn" subset and the
-     * neighbourhood of each entity.
+     * Gathers the k alive entities whose centers are closest to the given point, ordered by
+     * ascending distance.
+     * The cells are searched in rings of growing size around the cell containing the point. The
+     * search stops as soon as k entities have been found and no entity in an unvisited ring can be
+     * closer than the k-th one, as all cells in ring r + 1 are at least r cells away from the point.
+     * Only the outline of each ring is walked, clipped to the grid, and the search ends with the
+     * first ring lying completely outside the grid.
+     *
+     * @param center query point
+     * @param k      maximum number of entities to be returned
+     * @param sink   buffer receiving the entities, cleared before use
+     * @return the buffer passed in
      */
-    public void garbageRemoval() {
-
-
-        /**
-         * Remove dead entities from the main entity map.
-         */
-        for (Iterator<Map.Entry<Integer, Entity>> it = entities.entrySet().iterator(); it.hasNext(); ) {
-            Entity e = it.next().getValue();
-            if (!e.isAlive())
-                it.remove();
-        }
-
-        /**
-         * Remove dead entities from the entitiesToBeDrawn set.
-         */
-        for (Iterator<Entity> it = entitiesToBeDrawn.iterator(); it.hasNext(); ) {
-            if (!it.next().isAlive()) {
-                it.remove();
+    public Array<Entity> queryKNearest(Vector2 center, int k, Array<Entity> sink) {
+        sink.clear();
+        knnDistances.clear();
+        if (k <= 0)
+            return sink;
+
+        int originX = getCellX(center.x);
+        int originY = getCellY(center.y);
+        int maxRing = Math.max(Math.max(originX, SPATIAL_WIDTH - 1 - originX),
+                Math.max(originY, SPATIAL_HEIGHT - 1 - originY));
+        int stamp = nextQueryStamp();
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+
+            // Every entity left is at least (ring - 1) cells away from the query point.
+            if (sink.size == k) {
+                float bound = Math.max(ring - 1, 0) * spatialGridSize;
+                if (knnDistances.peek() <= bound * bound)
+                    break;
             }
-        }
 
-        /**
-         * Remove dead entities from the entity neighbourhoods.
-         */
-        for (Entity e : entities.values()) {
-            for (Iterator<Entity> it = e.getBody().getEntityNeighbourHood().iterator(); it.hasNext(); ) {
-                if (!it.next().isAlive())
-                    it.remove();
+            // Only the outline of the ring, the inner cells have been visited before.
+            int startX = Math.max(originX - ring, 0);
+            int endX = Math.min(originX + ring, SPATIAL_WIDTH - 1);
+            for (int cy = originY - ring; cy <= originY + ring; cy += Math.max(2 * ring, 1)) {
+                if (cy < 0 || cy >= SPATIAL_HEIGHT)
+                    continue;
+                for (int cx = startX; cx <= endX; cx++) {
+                    collectNearest(spatialCells[cx + cy * SPATIAL_WIDTH], center, k, stamp, sink);
+                }
+            }
 
+            int startY = Math.max(originY - ring + 1, 0);
+            int endY = Math.min(originY + ring - 1, SPATIAL_HEIGHT - 1);
+            for (int cx = originX - ring; ring > 0 && cx <= originX + ring; cx += 2 * ring) {
+                if (cx < 0 || cx >= SPATIAL_WIDTH)
+                    continue;
+                for (int cy = startY; cy <= endY; cy++) {
+                    collectNearest(spatialCells[cx + cy * SPATIAL_WIDTH], center, k, stamp, sink);
+                }
             }
         }
+        return sink;
+    }
 
+    /**
+     * Inserts the not yet visited entities of a cell into the sorted k nearest result.
+     */
+    private void collectNearest(EntityCell cell, Vector2 center, int k, int stamp, Array<Entity> sink) {
+        Array<Entity> cellEntities = cell.getEntities();
+        for (int i = 0; i < cellEntities.size; i++) {
+            Entity other = cellEntities.get(i);
+            Body body = other.getBody();
+            if (body.getQueryStamp() == stamp)
+                continue;
+            body.setQueryStamp(stamp);
+            if (!other.isAlive())
+                continue;
 
-        /**
-         * Remove dead projectiles.
-         */
-        for (Iterator<? extends Entity> it = projectiles.iterator(); it.hasNext(); ) {
-            if (!it.next().isAlive()) {
-                it.remove();
+            float dst2 = body.getCenter().dst2(center);
+            if (sink.size == k) {
+                if (dst2 >= knnDistances.peek())
+                    continue;
+                sink.pop();
+                knnDistances.pop();
             }
-        }
-
 
-        for (Iterator<Weapon> it = weaponDrops.iterator(); it.hasNext(); ) {
-            if (!it.next().isAlive())
-                it.remove();
+            // Insertion sort step, k is expected to be small.
+            int index = sink.size;
+            while (index > 0 && knnDistances.get(index - 1) > dst2) {
+                index--;
+            }
+            sink.insert(index, other);
+            knnDistances.insert(index, dst2);
         }
+    }
 
-        /**
-         * Remove dead mobile entities.
-         */
-        for (Iterator<Entity> it = mobileEntities.iterator(); it.hasNext(); ) {
-            if (!it.next().isAlive())
-                it.remove();
-        }
 
+    // ---------------------------------------------------------------------------------------------
+    // REMOVAL OF DEAD ENTITIES
+    // ---------------------------------------------------------------------------------------------
 
-        for (Iterator<Entity> it = livingEntities.iterator(); it.hasNext(); ) {
-            if (!it.next().isAlive())
-                it.remove();
-        }
+    /**
+     * Queues a destroyed entity for the next garbage removal. Until then the entity stays in all
+     * collections with its alive flag set to false.
+     */
+    public void enqueueRemoval(Entity entity) {
+        removalQueue.add(entity);
+    }
 
-        for(Iterator<ProjectileRay> it = projectileRays.iterator(); it.hasNext();) {
-            if(!it.next().isActive())
-                it.remove();
+    /**
+     * Removes all entities destroyed since the last call from all collections they belong to.
+     * Every entity knows its place in each collection, so only the queued entities are visited and
+     * the cost depends on the number of deaths, not on the number of entities.
+     */
+    public void garbageRemoval() {
+        if (removalQueue.size == 0)
+            return;
+
+        for (int i = 0; i < removalQueue.size; i++) {
+            Entity e = removalQueue.get(i);
+            entityRegistry.remove(e);
+            entityList.remove(e);
+            entityQueries.remove(e);
+            removeEntityFromSpatialHashingData(e);
+            broadphase.remove(e);
         }
-
-        /**
-         * Remove penetration points from ray casting
-         */
-
+        removalQueue.clear();
+        entityList.flush();
     }
 
     public void garbageRemoval(Set<? extends Entity> entities) {
@@ -682,7 +1079,13 @@ public class WorldContainer {
 
     public void registerEntity(Entity entity) {
 
-        entities.put(entity.getID(), entity);
+        if (!entityRegistry.contains(entity)) {
+            entityRegistry.add(entity);
+            entityList.add(entity);
+        }
+        entityQueries.update(entity);
+        updateEntityCells(entity);
+        broadphase.add(entity);
         entity.registerTime = entity.time;
         if (AwesomeJumperMain.onDebugMode()) {
             Gdx.app.log("Registered entity at", Float.toString(entity.registerTime));
@@ -748,12 +1151,16 @@ public class WorldContainer {
 
     //TODO: fix the reset feature
     public void reset() {
-        entities.clear();
         player.destroy();
-        randomLevelGenerator = new RandomLevelGenerator();
+        garbageRemoval();
+        entityRegistry.clear();
+        entityList.clear();
+        entityQueries.clear();
+        randomLevelGenerator = new RandomLevelGenerator(randomLevelGenerator.getSeed());
         randomLevelGenerator.init();
         randomLevelGenerator.load();
         // TODO: insert here: entities = randomLevelGenerator.getEntities()
+        initSpatialData();
         player = randomLevelGenerator.getPlayer();
         registerEntity(player);
     }
@@ -770,34 +1177,55 @@ public class WorldContainer {
         return collisionTiles;
     }
 
-    public HashSet<Entity> getEntities() {
-        return new HashSet<>(entities.values());
-    }
-
-    public HashMap<Integer, Entity> getEntityMap() {
-        return entities;
+    /**
+     * Returns a read-only view of all entities. Entities registered or killed while iterating
+     * show up or disappear after the next {@link #flushEntities()}.
+     */
+    public EntityList getEntities() {
+        return entityList;
     }
 
-    public HashSet<Weapon> getWeaponDrops() {
-        return weaponDrops;
+    /**
+     * Applies the entities registered since the last flush to the entity list.
+     * Called by the WorldController at the start of each frame.
+     */
+    public void flushEntities() {
+        entityList.flush();
     }
 
-    public HashSet<Pickup> getPickups() {
-        return pickups;
+    public EntityQuery getWeapons() {
+        return weapons;
     }
 
-    public HashSet<Entity> getMobileEntities() {
+    public EntityQuery getMobileEntities() {
         return mobileEntities;
     }
 
-    public HashSet<Entity> getLivingEntities() {
+    public EntityQuery getLivingEntities() {
         return livingEntities;
     }
 
-    public HashSet<Projectile> getProjectiles() {
+    public EntityQuery getProjectiles() {
         return projectiles;
     }
 
+    public EntityQueries getEntityQueries() {
+        return entityQueries;
+    }
+
+    /**
+     * Re-evaluates the query membership of the entity after its components changed. Entities not
+     * registered in this container are ignored.
+     */
+    public void updateEntityQueries(Entity entity) {
+        if (entityRegistry.contains(entity))
+            entityQueries.update(entity);
+    }
+
+    public Broadphase getBroadphase() {
+        return broadphase;
+    }
+
     public RandomLevelGenerator getRandomLevelGenerator() {
         return randomLevelGenerator;
     }
@@ -812,12 +1240,15 @@ public class WorldContainer {
     }
 
 
+    /**
+     * Resolves an entity handle. Returns null if the entity has been removed from the world since.
+     */
     public Entity getEntityByID(int id) {
-        Entity e = entities.get(id);
+        Entity e = entityRegistry.get(id);
         if (e == null) {
             Gdx.app.log("ERROR", "THE REQUESTED ENTITY WAS NOT FOUND. ENTITY ID: " + Integer.toString(id));
         }
-        return entities.get(id);
+        return e;
     }
 
     // GETTER FOR SPATIAL DIMENSIONS
@@ -830,21 +1261,25 @@ public class WorldContainer {
     }
 
     public int getSpatialFactor() {
-        return SPATIAL_HASH_GRID_SIZE;
+        return spatialGridSize;
     }
 
-    public HashMap<Vector2, EntityTileContainer> getSpatialHashingData() {
-        return spatialHashingData;
+    public SpatialStatistics getSpatialStatistics() {
+        return spatialStatistics;
     }
 
-    public int getHashCellSize(Vector2 index) {
-        return spatialHashingData.get(index).getEntities().size() +
-                spatialHashingData.get(index).getTiles().size();
+    public int getHashCellSize(int cx, int cy) {
+        int index = getCellIndex(cx, cy);
+        return spatialCells[index].getEntities().size + staticTileLayer.get(index).size();
+    }
+
+    public int getStaticTileCount() {
+        return staticTileCount;
     }
 
 
 
-    public HashSet<Vector2> getHitHashCells() {
+    public IntArray getHitHashCells() {
 
         return hitHashCells;
 
@@ -860,36 +1295,34 @@ public class WorldContainer {
 
 
     /**
-     * Inner class that manages entities and tiles for a given hashcell.
-     * Each hash cell contains an EntityTileContainer.
+     * Inner class that manages the entities of a given hashcell.
+     * Each hash cell of the dynamic layer contains an EntityCell.
      */
-    private class EntityTileContainer {
+    private class EntityCell {
 
-        private HashSet<Tile> tiles;
-        private HashSet<Entity> entities;
+        // Unordered, so removal swaps the last entity into the freed slot
+        private Array<Entity> entities;
 
-        EntityTileContainer() {
-            this.tiles = new HashSet<>();
-            this.entities = new HashSet<>();
+        EntityCell() {
+            this.entities = new Array<>(false, 4);
         }
 
         void addEntity(Entity e) {
             entities.add(e);
         }
 
-        void addTile(Tile t) {
-            tiles.add(t);
+        void removeEntity(Entity e) {
+            entities.removeValue(e, true);
         }
 
-        HashSet<Entity> getEntities() {
+        Array<Entity> getEntities() {
             return entities;
         }
 
-        HashSet<Tile> getTiles() {
-            return tiles;
+        void clear() {
+            entities.clear();
         }
 
-
     }
 
 
@@ -8,18 +8,19 @@ import com.badlogic.gdx.controllers.Controllers;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
 import com.trent.awesomejumper.controller.WorldController;
 import com.trent.awesomejumper.controller.entitymanagement.WorldContainer;
 import com.trent.awesomejumper.controller.rendering.PopUpRenderer;
 import com.trent.awesomejumper.controller.rendering.RenderingEngine;
 import com.trent.awesomejumper.engine.entity.Entity;
 import com.trent.awesomejumper.engine.entity.EntityInterface;
-import com.trent.awesomejumper.engine.modelcomponents.popups.Message;
 import com.trent.awesomejumper.engine.physics.ProjectileRay;
 import com.trent.awesomejumper.game.AwesomeJumperMain;
 import com.trent.awesomejumper.models.Player;
 import com.trent.awesomejumper.models.lootable.Lootable;
 import com.trent.awesomejumper.models.weapons.Weapon;
+import com.trent.awesomejumper.utils.Profiler;
 import com.trent.awesomejumper.utils.Utils;
 
 import java.util.EnumMap;
@@ -30,6 +31,7 @@ import static com.badlogic.gdx.Input.Buttons;
 import static com.badlogic.gdx.Input.Keys;
 import static com.trent.awesomejumper.controller.input.InputHandler.KeyBindings.CLEAR_POPUPS;
 import static com.trent.awesomejumper.controller.input.InputHandler.KeyBindings.DROP;
+import static com.trent.awesomejumper.controller.input.InputHandler.KeyBindings.DUMP_PROFILER;
 import static com.trent.awesomejumper.controller.input.InputHandler.KeyBindings.FULLSCREEN;
 import static com.trent.awesomejumper.controller.input.InputHandler.KeyBindings.MOUSE1;
 import static com.trent.awesomejumper.controller.input.InputHandler.KeyBindings.MOVE_DOWN;
@@ -47,6 +49,7 @@ import static com.trent.awesomejumper.controller.input.InputHandler.KeyBindings.
 import static com.trent.awesomejumper.controller.input.InputHandler.KeyBindings.TOGGLE_INFO_DRAWING;
 import static com.trent.awesomejumper.controller.input.InputHandler.KeyBindings.TOGGLE_LOGGING;
 import static com.trent.awesomejumper.controller.input.InputHandler.KeyBindings.TOGGLE_SPECIAL;
+import static com.trent.awesomejumper.controller.input.InputHandler.KeyBindings.TUNE_SPATIAL_GRID;
 import static com.trent.awesomejumper.utils.PhysicalConstants.ACCELERATION;
 
 /**
@@ -83,6 +86,8 @@ public class InputHandler implements InputProcessor {
         SHOW_PENETRATION_POINTS(Keys.V, TOGGLE),
         TOGGLE_LOGGING(Keys.L, TOGGLE),
         RAY_CASTING(Keys.X, TOGGLE),
+        TUNE_SPATIAL_GRID(Keys.G, TOGGLE),
+        DUMP_PROFILER(Keys.O, TOGGLE),
         INC_PEN(Keys.PLUS, TOGGLE)
         ;
 
@@ -144,6 +149,7 @@ public class InputHandler implements InputProcessor {
 
     private final float EQUIP_DISTANCE = 0.66f;
     private final float EQUIP_THRESHOLD = 0.33f;
+    private Array<Entity> pickupCandidates = new Array<>();
 
 
     Vector3 temp;
@@ -221,22 +227,21 @@ public class InputHandler implements InputProcessor {
             float mindst = Float.MAX_VALUE;
             float dst = 0;
             Entity target = null;
-            for (Entity e : player.getBody().getEntityNeighbourHood()) {
+            worldContainer.queryRadius(player.getBody().getCenter(), EQUIP_DISTANCE, pickupCandidates);
+            for (int i = 0; i < pickupCandidates.size; i++) {
+                Entity e = pickupCandidates.get(i);
                 if (e.getType().equals(EntityInterface.Type.DROPPED_WEAPON_ENTITY)) {
 
-                    dst = e.getBody().getCenter().cpy().dst(player.getBody().getCenter().cpy());
-                    if (dst > EQUIP_DISTANCE)
-                        continue;
-
+                    dst = e.getBody().getCenter().dst2(player.getBody().getCenter());
                     if (dst < mindst) {
                         target = e;
                         mindst = dst;
                     }
                 }
-                if (target != null) {
-                    if (player.time - player.getWeaponInventory().equipTime > EQUIP_THRESHOLD)
-                        player.getWeaponInventory().equipWeapon((Weapon) target);
-                }
+            }
+            if (target != null) {
+                if (player.time - player.getWeaponInventory().equipTime > EQUIP_THRESHOLD)
+                    player.getWeaponInventory().equipWeapon((Weapon) target);
             }
 
         }
@@ -443,7 +448,7 @@ public class InputHandler implements InputProcessor {
     private void timeInputPressed(KeyBindings binding) {
         if(!isPressed(binding)) {
             binding.timePressed = player.time;
-            PopUpRenderer.getInstance().addMessageToCategory(PopUpRenderer.PopUpCategories.HEAL, new Message(Float.toString(binding.timePressed), player.getPosition(), WorldController.worldTime, binding.threshold));
+            PopUpRenderer.getInstance().addMessage(PopUpRenderer.PopUpCategories.HEAL, Float.toString(binding.timePressed), player.getPosition(), binding.threshold);
             pressedKeysMap.put(binding,true);
         }
     }
@@ -453,7 +458,7 @@ public class InputHandler implements InputProcessor {
      * @param binding key we are interested in.
      */
     private void timeInputReleased(KeyBindings binding) {
-        PopUpRenderer.getInstance().addMessageToCategory(PopUpRenderer.PopUpCategories.DMG, new Message(Float.toString(WorldController.worldTime), player.getPosition(), WorldController.worldTime, binding.threshold));
+        PopUpRenderer.getInstance().addMessage(PopUpRenderer.PopUpCategories.DMG, Float.toString(WorldController.worldTime), player.getPosition(), binding.threshold);
         pressedKeysMap.put(binding,false);
     }
 
@@ -480,11 +485,15 @@ public class InputHandler implements InputProcessor {
                 PopUpRenderer.getInstance().clear();
             if (isPressed(SHOW_PENETRATION_POINTS)) {
                 for (Vector2 penetrationPoint : worldContainer.getPenetrationPoints()) {
-                    PopUpRenderer.getInstance().addMessageToCategory(PopUpRenderer.PopUpCategories.HEAL, new Message(penetrationPoint.toString(), penetrationPoint, WorldController.worldTime, PopUpRenderer.INFINITE_MESSAGE));
+                    PopUpRenderer.getInstance().addMessage(PopUpRenderer.PopUpCategories.HEAL, penetrationPoint.toString(), penetrationPoint, PopUpRenderer.INFINITE_MESSAGE);
                 }
             }
             if(isPressed(TOGGLE_LOGGING))
                 AwesomeJumperMain.toggleLogging();
+            if(isPressed(TUNE_SPATIAL_GRID))
+                worldContainer.requestSpatialRegrid();
+            if(isPressed(DUMP_PROFILER))
+                Gdx.app.log("PROFILER", Profiler.getReport());
             if(isPressed(RAY_CASTING)) {
                 if(!player.getWeaponInventory().isHoldingAWeapon())
                     return;
@@ -14,6 +14,7 @@ import com.trent.awesomejumper.utils.Interval;
 import com.trent.awesomejumper.utils.Utils;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -45,13 +46,14 @@ public class RandomLevelGenerator {
     // ---------------------------------------------------------------------------------------------
 
     private static final String TAG = "LEVEL GENERATOR";
+    public static final long DEFAULT_SEED = 1478304103000l;
     private Tile[][] levelData;
     private ArrayList<Room> rooms;
     private int levelWidth;
     private int levelHeight;
 
     //private HashSet<Entity> entities;
-    private HashMap<Integer, Entity> entities;
+    private ArrayList<Entity> entities;
     private HashSet<Weapon> weaponDrops;
     private HashSet<Pickup> pickups;
     //TODO: use a map to implement functions like getRoomById()....
@@ -121,17 +123,27 @@ public class RandomLevelGenerator {
      */
     private int totalRegions = 0;
 
+    /**
+     * Solidity bitmap of the level. The bit x + y * levelWidth is set if the tile at (x,y) is not
+     * passable. Used by the collision detection to skip passable tiles without touching them.
+     */
+    private BitSet solidityMap;
+
     // CONSTRUCTOR
     // ---------------------------------------------------------------------------------------------
 
     public RandomLevelGenerator() {
+        // seed = System.currentTimeMillis();
+        this(DEFAULT_SEED);
+    }
+
+    public RandomLevelGenerator(long seed) {
 
         Utils.log(TAG, "START LOADING LEVEL");
         /**
          * Init seed and level size. The level dimensions must be odd.
          */
-       // seed = System.currentTimeMillis();
-        seed = 1478304103000l;
+        this.seed = seed;
         random = new Random(seed);
         levelWidth = MIN_LEVEL_WIDTH + random.nextInt((MAX_LEVEL_WIDTH - MIN_LEVEL_WIDTH) / 2) * 2 + 1;
         levelHeight = MIN_LEVEL_HEIGHT + random.nextInt((MAX_LEVEL_HEIGHT - MIN_LEVEL_HEIGHT) / 2) * 2 + 1;
@@ -143,13 +155,17 @@ public class RandomLevelGenerator {
         this.levelData = new Tile[levelWidth][levelHeight];
         this.regions = new int[levelWidth][levelHeight];
         this.rooms = new ArrayList<>();
-        this.entities = new HashMap<>();
+        this.entities = new ArrayList<>();
 
     }
 
     // METHODS & FUNCTIONS
     // ---------------------------------------------------------------------------------------------
 
+    public long getSeed() {
+        return seed;
+    }
+
     /**
      * Initialises the level data with default wall tiles everywhere.
      */
@@ -180,9 +196,9 @@ public class RandomLevelGenerator {
      * 9) remove all dead ends
      * 10) finally placing the player in a random room.
      *
-     * @return returns a HashMap of all predefined entities in the level.
+     * @return returns a list of all predefined entities in the level.
      */
-    public HashMap<Integer, Entity> load() {
+    public ArrayList<Entity> load() {
         Room.Type baseRoomType; // holds the general size of the room. Random rectangularity is added later.
         /*
           First phase: generate rooms and store them in an array.
@@ -272,6 +288,7 @@ public class RandomLevelGenerator {
         Gdx.app.log("LEVEL", "REMOVING DEAD ENDS");
         removeDeadEnds();
         calculateBitMasks();
+        buildSolidityMap();
         placePlayer();
 
         return entities;
@@ -336,11 +353,11 @@ public class RandomLevelGenerator {
             Lootable c = new Lootable(r.getCenter().cpy().add(3, 1));
 
 
-            entities.put(p.getID(), p);
-            entities.put(q.getID(), q);
-            entities.put(s.getID(), s);
-            entities.put(t.getID(), t);
-            entities.put(c.getID(), c);
+            entities.add(p);
+            entities.add(q);
+            entities.add(s);
+            entities.add(t);
+            entities.add(c);
 
         }
     }
@@ -854,9 +871,9 @@ public class RandomLevelGenerator {
         Room home = rooms.get(homeRoomID);
         Gdx.app.log("HOME ROOM", home.toString() + "\n CENTER:" + home.getCenter().toString());
         /*Pistol p = new Pistol(home.getCenter().cpy().add(0.5f,0.5f));
-        entities.put(p.getID(),p);*/
+        entities.add(p);*/
         player = new Player(home.getCenter());
-        entities.put(player.getID(), player);
+        entities.add(player);
         Gdx.app.log("NUMBER OF ROOMS", Integer.toString(rooms.size()));
         Gdx.app.log("-------------------", "-----------------------");
         Gdx.app.log("NUMBER OF TINY ROOMS", Integer.toString(tinyRooms));
@@ -1117,9 +1134,30 @@ public class RandomLevelGenerator {
         }
     }
 
+    /**
+     * Builds the solidity bitmap from the final level data.
+     */
+    private void buildSolidityMap() {
+        solidityMap = new BitSet(levelWidth * levelHeight);
+        for (int x = 0; x < levelWidth; x++) {
+            for (int y = 0; y < levelHeight; y++) {
+                if (!levelData[x][y].isPassable())
+                    solidityMap.set(x + y * levelWidth);
+            }
+        }
+    }
+
     // GETTER & SETTER
     // ---------------------------------------------------------------------------------------------
 
+    /**
+     * Returns whether the tile at (x,y) blocks movement. Coordinates outside the level are not
+     * solid, as there is no tile to collide with.
+     */
+    public boolean isSolid(int x, int y) {
+        return x >= 0 && y >= 0 && x < levelWidth && y < levelHeight && solidityMap.get(x + y * levelWidth);
+    }
+
     public Tile getTile(int x, int y) {
         return levelData[x][y];
     }
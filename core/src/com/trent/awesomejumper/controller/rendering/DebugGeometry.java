@@ -0,0 +1,175 @@
+package com.trent.awesomejumper.controller.rendering;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.FloatArray;
+
+/**
+ * Collects the debug geometry of a frame (lines, outlined and filled rectangles, points) and draws
+ * all of it at once in {@link #flush(Matrix4)}.
+ * Drawing code only appends to plain float buffers, so it never has to begin, end or switch the
+ * shape type of a renderer. The flush draws all lines in one line pass and all filled shapes in
+ * one filled pass, no matter how much geometry was collected.
+ */
+public class DebugGeometry {
+
+    // MEMBERS & INSTANCES
+    // ---------------------------------------------------------------------------------------------
+
+    private static final int MAX_VERTICES = 20000;
+
+    // x1, y1, x2, y2, r1, g1, b1, a1, r2, g2, b2, a2
+    private static final int LINE_STRIDE = 12;
+    // x, y, width, height, r, g, b, a
+    private static final int RECT_STRIDE = 8;
+    // x1, y1, x2, y2, width, r, g, b, a
+    private static final int RECT_LINE_STRIDE = 9;
+
+    private final FloatArray lines = new FloatArray(LINE_STRIDE * 256);
+    private final FloatArray filledRects = new FloatArray(RECT_STRIDE * 256);
+    private final FloatArray rectLines = new FloatArray(RECT_LINE_STRIDE * 16);
+
+    private ShapeRenderer renderer;
+    private final Color startColor = new Color();
+    private final Color endColor = new Color();
+
+    // METHODS & FUNCTIONS
+    // ---------------------------------------------------------------------------------------------
+
+    public void line(float x1, float y1, float x2, float y2, Color color) {
+        line(x1, y1, x2, y2, color, color);
+    }
+
+    public void line(Vector2 start, Vector2 end, Color color) {
+        line(start.x, start.y, end.x, end.y, color, color);
+    }
+
+    /**
+     * Adds a line fading from the start color to the end color.
+     */
+    public void line(float x1, float y1, float x2, float y2, Color start, Color end) {
+        lines.add(x1);
+        lines.add(y1);
+        lines.add(x2);
+        lines.add(y2);
+        addColor(lines, start);
+        addColor(lines, end);
+    }
+
+    /**
+     * Adds the outline of a rectangle.
+     */
+    public void rect(float x, float y, float width, float height, Color color) {
+        line(x, y, x + width, y, color);
+        line(x + width, y, x + width, y + height, color);
+        line(x + width, y + height, x, y + height, color);
+        line(x, y + height, x, y, color);
+    }
+
+    public void filledRect(float x, float y, float width, float height, Color color) {
+        filledRect(x, y, width, height, color.r, color.g, color.b, color.a);
+    }
+
+    public void filledRect(float x, float y, float width, float height, float r, float g, float b, float a) {
+        filledRects.add(x);
+        filledRects.add(y);
+        filledRects.add(width);
+        filledRects.add(height);
+        filledRects.add(r);
+        filledRects.add(g);
+        filledRects.add(b);
+        filledRects.add(a);
+    }
+
+    /**
+     * Adds a filled square of the given size centered at (x,y).
+     */
+    public void point(float x, float y, float size, Color color) {
+        filledRect(x - size / 2f, y - size / 2f, size, size, color);
+    }
+
+    /**
+     * Adds a line with the given width, drawn as a filled shape.
+     */
+    public void rectLine(Vector2 start, Vector2 end, float width, Color color) {
+        rectLines.add(start.x);
+        rectLines.add(start.y);
+        rectLines.add(end.x);
+        rectLines.add(end.y);
+        rectLines.add(width);
+        addColor(rectLines, color);
+    }
+
+    /**
+     * Draws and clears all geometry collected since the last flush.
+     *
+     * @param projectionMatrix projection of the camera the geometry is drawn with
+     */
+    public void flush(Matrix4 projectionMatrix) {
+        if (lines.size == 0 && filledRects.size == 0 && rectLines.size == 0)
+            return;
+        if (renderer == null)
+            renderer = new ShapeRenderer(MAX_VERTICES);
+
+        Gdx.gl.glEnable(GL20.GL_BLEND);
+        Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+        renderer.setProjectionMatrix(projectionMatrix);
+
+        if (lines.size > 0) {
+            renderer.begin(ShapeRenderer.ShapeType.Line);
+            float[] items = lines.items;
+            for (int i = 0; i < lines.size; i += LINE_STRIDE) {
+                startColor.set(items[i + 4], items[i + 5], items[i + 6], items[i + 7]);
+                endColor.set(items[i + 8], items[i + 9], items[i + 10], items[i + 11]);
+                renderer.line(items[i], items[i + 1], items[i + 2], items[i + 3], startColor, endColor);
+            }
+            renderer.end();
+        }
+
+        if (filledRects.size > 0 || rectLines.size > 0) {
+            renderer.begin(ShapeRenderer.ShapeType.Filled);
+            float[] items = filledRects.items;
+            for (int i = 0; i < filledRects.size; i += RECT_STRIDE) {
+                renderer.setColor(items[i + 4], items[i + 5], items[i + 6], items[i + 7]);
+                renderer.rect(items[i], items[i + 1], items[i + 2], items[i + 3]);
+            }
+            items = rectLines.items;
+            for (int i = 0; i < rectLines.size; i += RECT_LINE_STRIDE) {
+                renderer.setColor(items[i + 5], items[i + 6], items[i + 7], items[i + 8]);
+                renderer.rectLine(items[i], items[i + 1], items[i + 2], items[i + 3], items[i + 4]);
+            }
+            renderer.end();
+        }
+
+        Gdx.gl.glDisable(GL20.GL_BLEND);
+        clear();
+    }
+
+    public void clear() {
+        lines.clear();
+        filledRects.clear();
+        rectLines.clear();
+    }
+
+    /**
+     * Releases the renderer. It is recreated by the next flush with queued geometry.
+     */
+    public void dispose() {
+        if (renderer != null) {
+            renderer.dispose();
+            renderer = null;
+        }
+        clear();
+    }
+
+    private static void addColor(FloatArray buffer, Color color) {
+        buffer.add(color.r);
+        buffer.add(color.g);
+        buffer.add(color.b);
+        buffer.add(color.a);
+    }
+}
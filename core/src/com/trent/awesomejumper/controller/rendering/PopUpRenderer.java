@@ -4,16 +4,17 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.BitmapFontCache;
 import com.badlogic.gdx.graphics.g2d.GlyphLayout;
 import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator;
 import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.Pool;
 import com.trent.awesomejumper.controller.WorldController;
 import com.trent.awesomejumper.engine.modelcomponents.popups.Message;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Map;
+import java.util.EnumMap;
 
 import static com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator.FreeTypeFontParameter;
 
@@ -24,12 +25,29 @@ import static com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator.FreeT
  * Better implementation than the previous popup component as the popup rendering was tied to the
  * existence of the entity.
  * Implemented as a singleton with a static global access point for other classes.
+ * Messages are taken from a pool and every category holds at most a fixed number of them, the
+ * oldest message of a full category is dropped. Damage values hitting the same target in the same
+ * frame are merged into one message, and the text layouts of damage values are cached.
  * TODO: GIVE POPUP ITS OWN FONT
  * Created by Sinthu on 30.03.2016.
  */
 public class PopUpRenderer extends Renderer {
 
-    private HashMap<PopUpCategories, LinkedList<Message>> messages;
+    private EnumMap<PopUpCategories, Array<Message>> messages;
+    private int messageCount = 0;
+    private final Pool<Message> messagePool = new Pool<Message>(64) {
+        @Override
+        protected Message newObject() {
+            return new Message();
+        }
+    };
+
+    // Cached layouts of damage values, rebuilt when the font scale changes
+    private static final int MAX_CACHED_LAYOUTS = 256;
+    private IntMap<GlyphLayout> damageLayouts = new IntMap<>();
+    private float damageLayoutScale = 1f;
+    private GlyphLayout textLayout = new GlyphLayout();
+    private Vector2 messagePosition = new Vector2();
     private final float MSG_FREQ = 12f;      // default frequency with which the message offset is modified
     private final float MSG_AMP = 8f;   // amplitude with which the message offset is modified
     private final float CRT_AMP = 12f;
@@ -48,13 +66,20 @@ public class PopUpRenderer extends Renderer {
     private BitmapFont popUpFont;
 
     public enum PopUpCategories {
-        DMG,     // Damage
-        HEAL,       // Heal
-        CRT,   // Critical Hit
-        LVL_UP,     // Level Up
-        MISC        // Miscellaneous
+        DMG(48),     // Damage
+        HEAL(16),       // Heal
+        CRT(16),   // Critical Hit
+        LVL_UP(4),     // Level Up
+        MISC(32);        // Miscellaneous
+
+        private final int CAPACITY;   // maximum number of messages shown at once
+        PopUpCategories(int capacity) {
+            this.CAPACITY = capacity;
+        }
     }
 
+    private static final PopUpCategories[] CATEGORIES = PopUpCategories.values();
+
     private float r,g,b,a;
 
     public static PopUpRenderer getInstance() {
@@ -78,18 +103,15 @@ public class PopUpRenderer extends Renderer {
         // Init renderer, start with a default camera and sprite batch
         super(CAMERA_WIDTH, CAMERA_HEIGHT);
         camera.position.set(CAMERA_WIDTH / 2, CAMERA_HEIGHT / 2, 0);
-        this.messages = new HashMap<>();
-        messages.put(PopUpCategories.DMG, new LinkedList<Message>());
-        messages.put(PopUpCategories.HEAL, new LinkedList<Message>());
-        messages.put(PopUpCategories.CRT, new LinkedList<Message>());
-        messages.put(PopUpCategories.LVL_UP, new LinkedList<Message>());
-        messages.put(PopUpCategories.MISC, new LinkedList<Message>());
+        this.messages = new EnumMap<>(PopUpCategories.class);
+        for (PopUpCategories category : CATEGORIES)
+            messages.put(category, new Array<Message>(category.CAPACITY));
 
     }
 
     @Override
     public void render() {
-        if (messages.isEmpty())
+        if (messageCount == 0)
             return;
 
         /**
@@ -103,14 +125,16 @@ public class PopUpRenderer extends Renderer {
         spriteBatch.begin();
         {
             /**
-             * Iterate over the entrySet of the message HashMap and render each message by category.
+             * Iterate over all categories and render each message by category. Expired messages
+             * are freed and the remaining ones are compacted in place, keeping their order.
              */
-            for (Map.Entry<PopUpCategories, LinkedList<Message>> entry : messages.entrySet()) {
-                LinkedList<Message> messageList = entry.getValue();
-                time = WorldController.worldTime;
+            time = WorldController.worldTime;
+            for (PopUpCategories category : CATEGORIES) {
+                Array<Message> messageList = messages.get(category);
+                int kept = 0;
 
-                for (Iterator<Message> it = messageList.iterator(); it.hasNext(); ) {
-                    Message message = it.next(); // get the current message
+                for (int i = 0; i < messageList.size; i++) {
+                    Message message = messageList.get(i); // get the current message
                     float progress = (time - message.getTimeStamp()) / message.getDuration();
 
                     /**
@@ -126,12 +150,14 @@ public class PopUpRenderer extends Renderer {
                      */
 
                     if (progress >= 1) {
-                        it.remove();
+                        messagePool.free(message);
+                        messageCount--;
                         continue;
                     }
+                    messageList.set(kept++, message);
                     float xOffset = 0f;
                     float yOffset = -1/(progress*progress+0.01f) + 100;
-                    switch (entry.getKey()) {
+                    switch (category) {
                         case DMG:
                             popUpFont.setColor(DMG.r, DMG.g, DMG.b, 1 - progress*progress);
                            // xOffset = (float) Math.cos((time - message.getTimeStamp()) * MSG_FREQ) * MSG_AMP;
@@ -160,17 +186,25 @@ public class PopUpRenderer extends Renderer {
                      * Draw message to screen.
                      */
 
-                    GlyphLayout glyphLayout = new GlyphLayout();
-                    glyphLayout.setText(popUpFont, message.getMessage());
+                    GlyphLayout glyphLayout = getLayout(message);
                     float messageWidth = glyphLayout.width;
                     Vector2 unprojectedMessagePos = unprojectXToPixels(message.getPosition());
                     unprojectedMessagePos.x += xOffset;
                     unprojectedMessagePos.x -= messageWidth / 2f;
                     unprojectedMessagePos.y += yOffset;
 
-                    popUpFont.draw(spriteBatch, glyphLayout, unprojectedMessagePos.x, unprojectedMessagePos.y);
+                    /**
+                     * Layouts are shared between messages, so the color of the current message
+                     * is applied to the glyphs after they were added to the font cache.
+                     */
+                    BitmapFontCache fontCache = popUpFont.getCache();
+                    fontCache.clear();
+                    fontCache.addText(glyphLayout, unprojectedMessagePos.x, unprojectedMessagePos.y);
+                    fontCache.setColors(popUpFont.getColor());
+                    fontCache.draw(spriteBatch);
 
                 }
+                messageList.truncate(kept);
 
             }
         }
@@ -180,7 +214,8 @@ public class PopUpRenderer extends Renderer {
     }
 
     /**
-     * Adds a message to a corresponding category in the message hash map.
+     * Adds a message to a corresponding category in the message hash map. If the category is full,
+     * its oldest message is dropped.
      *
      * @param category category
      * @param message  message
@@ -188,7 +223,65 @@ public class PopUpRenderer extends Renderer {
     public void addMessageToCategory(PopUpCategories category, Message message) {
         if (!messages.containsKey(category))
             return;
-        messages.get(category).add(message);
+        Array<Message> messageList = messages.get(category);
+        if (messageList.size >= category.CAPACITY) {
+            messagePool.free(messageList.removeIndex(0));
+            messageCount--;
+        }
+        messageList.add(message);
+        messageCount++;
+    }
+
+    /**
+     * Adds a pooled text message starting at the current world time.
+     *
+     * @param position position the message follows, not copied
+     */
+    public void addMessage(PopUpCategories category, String text, Vector2 position, float duration) {
+        addMessageToCategory(category, messagePool.obtain().setText(text, position, WorldController.worldTime, duration));
+    }
+
+    /**
+     * Adds a damage value dealt to a target. If the target was already hit in this frame, the
+     * damage is added to the existing message of the category instead.
+     *
+     * @param target   ID of the damaged entity
+     * @param position position the message follows, not copied
+     */
+    public void addDamage(PopUpCategories category, int target, Vector2 position, int damage, float duration) {
+        Array<Message> messageList = messages.get(category);
+        for (int i = messageList.size - 1; i >= 0; i--) {
+            Message message = messageList.get(i);
+            if (message.getTimeStamp() != WorldController.worldTime)
+                break;
+            if (message.isNumeric() && message.getTarget() == target) {
+                message.addValue(damage);
+                return;
+            }
+        }
+        addMessageToCategory(category, messagePool.obtain().setValue(damage, target, position, WorldController.worldTime, duration));
+    }
+
+    /**
+     * Returns the layout of the message. Damage values use cached layouts, other texts are laid
+     * out into a shared layout.
+     */
+    private GlyphLayout getLayout(Message message) {
+        if (!message.isNumeric()) {
+            textLayout.setText(popUpFont, message.getMessage());
+            return textLayout;
+        }
+
+        if (damageLayoutScale != popUpFont.getScaleX() || damageLayouts.size >= MAX_CACHED_LAYOUTS) {
+            damageLayouts.clear();
+            damageLayoutScale = popUpFont.getScaleX();
+        }
+        GlyphLayout layout = damageLayouts.get(message.getValue());
+        if (layout == null) {
+            layout = new GlyphLayout(popUpFont, "-" + Integer.toString(message.getValue()));
+            damageLayouts.put(message.getValue(), layout);
+        }
+        return layout;
     }
 
 
@@ -213,7 +306,7 @@ public class PopUpRenderer extends Renderer {
 
 
     private Vector2 unprojectXToPixels(Vector2 position) {
-        Vector2 result = new Vector2(0,0);
+        Vector2 result = messagePosition;
         result.x =(int) (position.x * RenderingEngine.ppuX );
         result.y =(int) (position.y * RenderingEngine.ppuY );
         return result;
@@ -225,9 +318,12 @@ public class PopUpRenderer extends Renderer {
      * Used for debugging.
      */
     public void clear() {
-        for (PopUpCategories category : messages.keySet()) {
-             messages.get(category).clear();
+        for (PopUpCategories category : CATEGORIES) {
+            Array<Message> messageList = messages.get(category);
+            messagePool.freeAll(messageList);
+            messageList.clear();
         }
+        messageCount = 0;
     }
 
 }
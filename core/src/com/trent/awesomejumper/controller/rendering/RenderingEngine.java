@@ -17,7 +17,10 @@ import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
 import com.badlogic.gdx.utils.StringBuilder;
+import com.trent.awesomejumper.controller.entitymanagement.CellRange;
+import com.trent.awesomejumper.controller.entitymanagement.EntityList;
 import com.trent.awesomejumper.controller.entitymanagement.WorldContainer;
 import com.trent.awesomejumper.controller.collision.CollisionController;
 import com.trent.awesomejumper.controller.input.InputHandler;
@@ -28,6 +31,7 @@ import com.trent.awesomejumper.game.AwesomeJumperMain;
 import com.trent.awesomejumper.models.Player;
 import com.trent.awesomejumper.models.SkyBox;
 import com.trent.awesomejumper.tiles.Tile;
+import com.trent.awesomejumper.utils.Profiler;
 import com.trent.awesomejumper.utils.Utils;
 
 import java.util.EnumMap;
@@ -35,6 +39,9 @@ import java.util.EnumMap;
 import static com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator.FreeTypeFontParameter;
 import static com.trent.awesomejumper.controller.rendering.RenderingEngine.DEBUG_TAGS.*;
 import static com.trent.awesomejumper.engine.modelcomponents.ModelComponent.ComponentID.GRAPHICS;
+import static com.trent.awesomejumper.utils.Profiler.Phase.ENTITY_RENDER;
+import static com.trent.awesomejumper.utils.Profiler.Phase.POPUPS;
+import static com.trent.awesomejumper.utils.Profiler.Phase.TILE_RENDER;
 import static com.trent.awesomejumper.utils.Utils.printVec;
 
 
@@ -64,6 +71,7 @@ public class RenderingEngine extends Renderer {
     private final float ZOOM = 0.6f;
 
     private final float BOX_SIZE = 0.05f;
+    private static final Color VELOCITY_COLOR = new Color(0, 0.5f, 0.5f, 1);
 
     protected static Vector2 camPositionInPx;
     private Vector3 unprojectedMousePosition;
@@ -87,6 +95,9 @@ public class RenderingEngine extends Renderer {
     private Array<TextureAtlas.AtlasRegion> wallTextures;
     private Array<TextureAtlas.AtlasRegion> floorTextures;
 
+    // Baked geometry of the tile layer
+    private TileChunkCache tileChunkCache = new TileChunkCache();
+
 
     // TEXTURES: SKY
     private TextureRegion background01, farSkyTexture, nearSkyTexture, sunTexture;
@@ -114,7 +125,11 @@ public class RenderingEngine extends Renderer {
         DE_MOBILE_ENTITY_COUNT("MOBILE ENTITIES"),
         DE_LIVING_ENTITY_COUNT("LIVING ENTITIES"),
         DE_COLLISION_CHECKS("CD CHECKS PER FRAME"),
+        DE_BROADPHASE("BROADPHASE PAIRS"),
+        DE_CONTACT_CACHE("CACHED CONTACTS | REJECTS"),
+        DE_SOLVER_CONTACTS("SOLVER CONTACTS"),
         DE_NUMBER_OF_TILES("NUMBER OF LEVEL TILES"),
+        DE_SPATIAL_GRID("HASH CELL SIZE"),
         DE_CURRENT_HASH_CELL("PLAYER CURRENT HASH CELLS"),
         DE_ENTITIES_NEARBY("ENTITIES NEARBY"),
         DE_TILES_NEARBY("TILES NEARBY"),
@@ -124,20 +139,49 @@ public class RenderingEngine extends Renderer {
         DE_RAY_START("RAY START"),
         DE_RAY_END("RAY_END"),
         DE_TIME("TIME"),
-        DE_LOGGING("LOGGING");
+        DE_LOGGING("LOGGING"),
+
+        // PROFILER GROUP, drawn in its own column
+        DE_PROF_INPUT(Profiler.Phase.INPUT),
+        DE_PROF_WORLD_COLLISIONS(Profiler.Phase.WORLD_COLLISIONS),
+        DE_PROF_ENTITY_COLLISIONS(Profiler.Phase.ENTITY_COLLISIONS),
+        DE_PROF_PROJECTILE_COLLISIONS(Profiler.Phase.PROJECTILE_COLLISIONS),
+        DE_PROF_RAY_CASTS(Profiler.Phase.RAY_CASTS),
+        DE_PROF_GARBAGE_REMOVAL(Profiler.Phase.GARBAGE_REMOVAL),
+        DE_PROF_SPATIAL_UPDATE(Profiler.Phase.SPATIAL_UPDATE),
+        DE_PROF_INTEGRATION(Profiler.Phase.INTEGRATION),
+        DE_PROF_TILE_RENDER(Profiler.Phase.TILE_RENDER),
+        DE_PROF_ENTITY_RENDER(Profiler.Phase.ENTITY_RENDER),
+        DE_PROF_POPUPS(Profiler.Phase.POPUPS);
 
         private String tag;
+        private Profiler.Phase phase;
 
         DEBUG_TAGS(String tag) {
             this.tag = tag;
         }
 
+        DEBUG_TAGS(Profiler.Phase phase) {
+            this.tag = phase.tag;
+            this.phase = phase;
+        }
+
 
     }
 
     private EnumMap<DEBUG_TAGS, String> debugTags;
     private final int CONSOLE_LINE_HEIGHT = 24;
     ShapeRenderer shapeRenderer = new ShapeRenderer();
+    // Debug lines, boxes and points of the frame, drawn all at once at the end of render()
+    private DebugGeometry debugGeometry = new DebugGeometry();
+
+    // Reusable query buffers for the spatial hashing debug output
+    private CellRange debugCellRange = new CellRange();
+    private Array<Entity> debugEntities = new Array<>();
+    private Array<Tile> debugTiles = new Array<>();
+
+    // Entities drawn this frame which show a health bar
+    private Array<Entity> healthBarEntities = new Array<>(false, 16);
 
 
     // CONSTRUCTOR
@@ -246,6 +290,7 @@ public class RenderingEngine extends Renderer {
         // TILE TEXTURES
         wallTextures = allTextures.findRegions("wall");
         floorTextures = allTextures.findRegions("floor");
+        tileChunkCache.build(worldContainer.getRandomLevelGenerator(), wallTextures, floorTextures);
 
 
         // SKY TEXTURES
@@ -296,17 +341,15 @@ public class RenderingEngine extends Renderer {
 
         camPositionInPx.set(camera.position.x * ppuX, camera.position.y * ppuY);
 
+        // TILES
+        Profiler.begin(TILE_RENDER);
+        renderTiles();
+        Profiler.end(TILE_RENDER);
+
+        Profiler.begin(ENTITY_RENDER);
         spriteBatch.setProjectionMatrix(camera.combined);
         spriteBatch.begin();
         {
-            // TILES
-            renderTiles();
-            // HITBOXES
-            if (game.hitboxesEnabled()) {
-                spriteBatch.end();
-                drawHitboxes();
-                spriteBatch.begin();
-            }
             // ENTITIES
             if (game.entitiesEnabled()) {
                 renderEntities();
@@ -314,13 +357,25 @@ public class RenderingEngine extends Renderer {
         }
         spriteBatch.end();
 
+        // HEALTH BARS
+        renderHealthBars();
+        Profiler.end(ENTITY_RENDER);
+
+        // HITBOXES
+        if (game.hitboxesEnabled()) {
+            drawHitboxes();
+        }
+        debugGeometry.flush(camera.combined);
+
         // DEBUG INFO
         if (game.infoEnabled()) {
             renderDebugInfo();
         }
 
         // OTHER RENDERERS
+        Profiler.begin(POPUPS);
         popUpRenderer.render();
+        Profiler.end(POPUPS);
         hudRenderer.render();
     }
 
@@ -375,53 +430,69 @@ public class RenderingEngine extends Renderer {
 
     /**
      * Iterates over all entities in the world and renders them on the screen.
+     * Entities showing a health bar are collected for {@link #renderHealthBars()}.
      */
     public void renderEntities() {
         Vector2 cameraPosition = new Vector2(camera.position.x, camera.position.y);
-        for (Entity e : worldContainer.getEntitiesToBeRendered(cameraPosition, CAMERA_WIDTH, CAMERA_HEIGHT)) {
+        Array<Entity> entities = worldContainer.getEntitiesToBeRendered(cameraPosition, CAMERA_WIDTH, CAMERA_HEIGHT);
+        for (int i = 0; i < entities.size; i++) {
+            Entity e = entities.get(i);
             e.render(spriteBatch);
+            if (e.getGraphics().hasHealthBar())
+                healthBarEntities.add(e);
         }
 
     }
 
+    /**
+     * Draws the health bars collected during the entity pass in a single shape renderer pass,
+     * so the number of draw calls does not depend on the number of hurt entities.
+     */
+    private void renderHealthBars() {
+        if (healthBarEntities.size == 0)
+            return;
+
+        Gdx.gl.glEnable(GL20.GL_BLEND);
+        Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+        shapeRenderer.setProjectionMatrix(camera.combined);
+        shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
+        for (int i = 0; i < healthBarEntities.size; i++) {
+            healthBarEntities.get(i).getGraphics().renderHealthBar(shapeRenderer);
+        }
+        shapeRenderer.end();
+        Gdx.gl.glDisable(GL20.GL_BLEND);
+        healthBarEntities.clear();
+    }
+
     // DRAW TILES
     // ---------------------------------------------------------------------------------------------
 
+    /**
+     * Draws the chunks of the baked tile layer overlapping the camera. In debug mode, the collision
+     * boxes of the solid tiles are drawn instead.
+     */
     private void renderTiles() {
-        Vector2 cameraPosition = new Vector2(camera.position.x, camera.position.y);
-        TextureRegion wall;
-        TextureRegion floor;
-        for (Tile newTile : worldContainer.getTilesToBeRendered(cameraPosition, CAMERA_WIDTH * camera.zoom, CAMERA_HEIGHT * camera.zoom)) {
-            Tile.TileType type = newTile.getType();
-            Vector2 position = newTile.getPosition();
-            if (!game.onDebugMode()) {
-                switch (type) {
-                    case WALL:
-                        wall = wallTextures.get(newTile.tileIndex);
-                        spriteBatch.draw(wall, position.x, position.y, Tile.SIZE, Tile.SIZE);
-                        break;
-                    case FLOOR:
-                        floor = floorTextures.get(0);
-                        spriteBatch.draw(floor, position.x, position.y, Tile.SIZE, Tile.SIZE);
-                        break;
-                    default:
-                        break;
-
-                }
+        float viewWidth = CAMERA_WIDTH * camera.zoom;
+        float viewHeight = CAMERA_HEIGHT * camera.zoom;
 
-            }
+        if (!game.onDebugMode()) {
+            tileChunkCache.render(camera, viewWidth + 2 * Tile.SIZE, viewHeight + 2 * Tile.SIZE);
+            return;
+        }
 
-            else if (game.onDebugMode()) {
-                spriteBatch.end();
-                shapeRenderer.setProjectionMatrix(camera.combined);
-                shapeRenderer.begin(ShapeRenderer.ShapeType.Line);
-                if (!newTile.isPassable())
-                    newTile.getCollisionBox().draw(shapeRenderer);
-                shapeRenderer.end();
-                spriteBatch.begin();
-            }
+        Vector2 cameraPosition = new Vector2(camera.position.x, camera.position.y);
+        for (Tile newTile : worldContainer.getTilesToBeRendered(cameraPosition, viewWidth, viewHeight)) {
+            if (!newTile.isPassable())
+                newTile.getCollisionBox().draw(debugGeometry);
         }
+    }
 
+    /**
+     * Has to be called whenever the tile at (x,y) changes after the level was loaded, so the
+     * baked tile layer is updated.
+     */
+    public void invalidateTile(int x, int y) {
+        tileChunkCache.invalidate(x, y);
     }
 
     // DRAW BACKGROUND
@@ -493,7 +564,13 @@ public class RenderingEngine extends Renderer {
         debugBatch.setProjectionMatrix(debugCam.combined);
         debugBatch.begin();
         int i = 0;
+        int profilerLine = 0;
         for (DEBUG_TAGS c : debugTags.keySet()) {
+            if (c.phase != null) {
+                debugFont.draw(debugBatch, debugTags.get(c), debugCam.viewportWidth / 2f, debugCam.viewportHeight - CONSOLE_LINE_HEIGHT * (profilerLine + 1));
+                profilerLine++;
+                continue;
+            }
             debugFont.draw(debugBatch, debugTags.get(c), 14, debugCam.viewportHeight - CONSOLE_LINE_HEIGHT * (i + 1));
             i++;
         }
@@ -547,32 +624,42 @@ public class RenderingEngine extends Renderer {
         setDebugTag(DE_LIVING_ENTITY_COUNT, worldContainer.getLivingEntities().size());
 
         // WEAPON DROPS AND EQUIPPED WEAPONS
-        builder.append(worldContainer.getWeaponDrops().size());
+        builder.append(worldContainer.getWeapons().size());
         builder.append(" EQUIPPED: ").append(player.getWeaponInventory().getWeaponsEquipped());
         setDebugTag(DE_WEAPON_DROP_COUNT, builder);
 
         // NUMBER OF COLLISION CHECKS PER FRAME
         setDebugTag(DE_COLLISION_CHECKS, Float.toString(CollisionController.calledPerFrame));
-        setDebugTag(DE_NUMBER_OF_TILES, worldContainer.getRandomLevelGenerator().getCollidableTiles().size());
+        builder.append(worldContainer.getBroadphase().getType().getTag()).append(": ").append(CollisionController.broadphasePairs);
+        setDebugTag(DE_BROADPHASE, builder);
+        builder.append(CollisionController.cachedContacts).append(" | ").append(CollisionController.cachedRejects);
+        setDebugTag(DE_CONTACT_CACHE, builder);
+        setDebugTag(DE_SOLVER_CONTACTS, CollisionController.solverContacts);
+        setDebugTag(DE_NUMBER_OF_TILES, worldContainer.getStaticTileCount());
+        setDebugTag(DE_SPATIAL_GRID, worldContainer.getSpatialStatistics().getSummary());
 
         // CURRENT HASH CELLS OCCUPIED BY PLAYER AND THEIR SIZE
-        for (Vector2 index : worldContainer.getSpatialIndexes(player)) {
-            builder.append(Utils.printVec(index)).append(worldContainer.getHashCellSize(index));
+        CellRange playerCells = worldContainer.getCellRange(player, debugCellRange);
+        for (int cx = playerCells.startX; cx <= playerCells.endX; cx++) {
+            for (int cy = playerCells.startY; cy <= playerCells.endY; cy++) {
+                builder.append(Utils.printVec(cx, cy)).append(worldContainer.getHashCellSize(cx, cy));
+            }
         }
         setDebugTag(DE_CURRENT_HASH_CELL, builder);
 
         // CURRENT HASH CELLS COVERED BY THE AIM RAY
         //for(Vector2 index: worldContainer.generateCrossedIndexes(player.getWeaponInventory().getSelectedWeapon().getBody().getCenter().cpy(),player.getWeaponInventory().getSelectedWeapon().getBody().getOrientation().cpy() )) {
-        for(Vector2 index : player.getBody().getBounds().getEdges()) {
-            builder.append(printVec(index));
+        CollisionBox playerBounds = player.getBody().getBounds();
+        for(int i = 0; i < playerBounds.getVertexCount(); i++) {
+            builder.append(printVec(playerBounds.getEdgeX(i), playerBounds.getEdgeY(i)));
         }
         setDebugTag(DE_HASH_CELLS_FOR_RAY, builder);
 
         // NEARBY ENTITIES IN SAME HASH CELL
-        setDebugTag(DE_ENTITIES_NEARBY, worldContainer.getEntitiesNearby(player).size());
+        setDebugTag(DE_ENTITIES_NEARBY, worldContainer.getEntitiesNearby(player, debugEntities).size);
 
         // NEARBY TILES IN THE SAME HASH CELL
-        for (Tile t : worldContainer.getTilesNearby(player)) {
+        for (Tile t : worldContainer.getTilesNearby(player, debugTiles)) {
             builder.append(t.getPosition());
         }
 
@@ -580,9 +667,8 @@ public class RenderingEngine extends Renderer {
 
         // HASH CELLS FOR THE CURRENT CURSOR POSITION
 
-        for (Vector2 index : worldContainer.getSpatialIndexes(worldContainer.getRandomLevelGenerator().getTile(InputHandler.getCursorPosition()))) {
-            builder.append(Utils.printVec(index));
-        }
+        Vector2 cursorTile = worldContainer.getRandomLevelGenerator().getTile(InputHandler.getCursorPosition()).getPosition();
+        builder.append(Utils.printVec(worldContainer.getCellX(cursorTile.x), worldContainer.getCellY(cursorTile.y)));
         setDebugTag(DE_HASH_CELLS_FOR_SELECTION, builder);
 
         // RAY CASTING
@@ -599,6 +685,12 @@ public class RenderingEngine extends Renderer {
         // LOGGING
         setDebugTag(DE_LOGGING, Boolean.toString(AwesomeJumperMain.onLogging()));
 
+        // PROFILER, PHASE TIMES OVER THE LAST FRAMES
+        for (DEBUG_TAGS c : DEBUG_TAGS.values()) {
+            if (c.phase != null)
+                setDebugTag(c, Profiler.getSummary(c.phase));
+        }
+
     }
 
     /**
@@ -628,125 +720,97 @@ public class RenderingEngine extends Renderer {
 
     // HITBOXES
     // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Adds the hitboxes, aim and neighbourhood lines, spatial hashing cells and penetration points
+     * to the debug geometry of the frame.
+     */
     public void drawHitboxes() {
-        shapeRenderer.setProjectionMatrix(camera.combined);
 
         /**
          * Drawing entity hitboxes.
          */
-        shapeRenderer.begin(ShapeRenderer.ShapeType.Line);
-        {
-            for (Entity e : worldContainer.getEntities()) {
-                /**
-                 * Only if the body flag is enabled, body hitboxes will be drawn.
-                 */
-                shapeRenderer.setColor(1, 0, 0, 1);
-                e.getBounds().draw(shapeRenderer);
-                if (game.bodyEnabled()) {
-                    for (CollisionBox box : e.getBodyHitboxes()) {
-                        shapeRenderer.setColor(Color.YELLOW);
-                        box.draw(shapeRenderer);
-                    }
+        EntityList entities = worldContainer.getEntities();
+        for (int i = 0; i < entities.size(); i++) {
+            Entity e = entities.get(i);
+            e.getBounds().draw(debugGeometry);
+            /**
+             * Only if the body flag is enabled, body hitboxes will be drawn.
+             */
+            if (game.bodyEnabled()) {
+                for (CollisionBox box : e.getBodyHitboxes()) {
+                    box.draw(debugGeometry);
                 }
+            }
 
-                if (e.getBody().isCollidedWithWorld()) {
-                    shapeRenderer.end();
-                    shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
-                    shapeRenderer.setColor(Color.RED);
-                    shapeRenderer.rect(e.getBounds().getPositionAndOffset().x, e.getBounds().getPositionAndOffset().y, e.getBounds().getWidth(), e.getBounds().getHeight());
-                    shapeRenderer.end();
-                    shapeRenderer.begin(ShapeRenderer.ShapeType.Line);
-                }
+            if (e.getBody().isCollidedWithWorld()) {
+                CollisionBox bounds = e.getBounds();
+                debugGeometry.filledRect(bounds.getPositionAndOffset().x, bounds.getPositionAndOffset().y,
+                        bounds.getWidth(), bounds.getHeight(), Color.RED);
             }
         }
-        shapeRenderer.end();
-
-
-
 
 
         /**
          * Drawing a line to the point of aim.
          */
-        shapeRenderer.begin(ShapeRenderer.ShapeType.Line);
-        {
-            shapeRenderer.setColor(Color.BLUE);
-            if (player.getWeaponInventory().isHoldingAWeapon())
-                shapeRenderer.line(player.getWeaponInventory().getSelectedWeapon().getBody().getCenter().cpy(), player.getWeaponInventory().getSelectedWeapon().getBody().getAimReference().cpy());
+        if (player.getWeaponInventory().isHoldingAWeapon())
+            debugGeometry.line(player.getWeaponInventory().getSelectedWeapon().getBody().getCenter(),
+                    player.getWeaponInventory().getSelectedWeapon().getBody().getAimReference(), Color.BLUE);
 
-            /**
-             * Drawing a line to all entities in the neighbourhood.
-             */
-            shapeRenderer.setColor(Color.BLUE);
-            for (Entity e : player.getBody().getEntityNeighbourHood()) {
-                shapeRenderer.line(player.getBody().getCenter(), e.getBody().getCenter());
-            }
+        /**
+         * Drawing a line to all entities in the neighbourhood.
+         */
+        worldContainer.queryRadius(player.getBody().getCenter(), WorldContainer.NEIGHBOURHOOD_RANGE, debugEntities);
+        for (int i = 0; i < debugEntities.size; i++) {
+            Entity e = debugEntities.get(i);
+            if (e != player)
+                debugGeometry.line(player.getBody().getCenter(), e.getBody().getCenter(), Color.BLUE);
         }
-        shapeRenderer.end();
 
 
         // DRAW SPATIAL HASHING CELLS
-        shapeRenderer.begin(ShapeRenderer.ShapeType.Line);
-        {
-            for (Vector2 index : worldContainer.getSpatialHashingData().keySet()) {
-
-                int numberOfEntities = worldContainer.getEntitiesForCell(index).size();
-                int numberOfTiles = worldContainer.getTilesForCell(index).size();
-
-
-
-                if (numberOfTiles >= 0) {
-
-                    if(numberOfTiles == 0)
-                        shapeRenderer.setColor(Color.YELLOW);
-
-                    if (numberOfTiles == 1)
-                        shapeRenderer.setColor(Color.RED);
-                    else if (numberOfTiles == 2)
-                        shapeRenderer.setColor(Color.GREEN);
-                    else if (numberOfTiles == 3)
-                        shapeRenderer.setColor(Color.BLUE);
-                    else if (numberOfTiles > 3)
-                        shapeRenderer.setColor(Color.PINK);
-                    shapeRenderer.rect(index.x, index.y, worldContainer.getSpatialFactor(), worldContainer.getSpatialFactor());
-
-                }
-
+        float spatialFactor = worldContainer.getSpatialFactor();
+        for (int cx = 0; cx < worldContainer.getSpatialWidth(); cx++) {
+            for (int cy = 0; cy < worldContainer.getSpatialHeight(); cy++) {
+
+                int numberOfTiles = worldContainer.getTilesForCell(cx, cy).size();
+                Color cellColor;
+                if (numberOfTiles == 0)
+                    cellColor = Color.YELLOW;
+                else if (numberOfTiles == 1)
+                    cellColor = Color.RED;
+                else if (numberOfTiles == 2)
+                    cellColor = Color.GREEN;
+                else if (numberOfTiles == 3)
+                    cellColor = Color.BLUE;
+                else
+                    cellColor = Color.PINK;
+                debugGeometry.rect(cx * spatialFactor, cy * spatialFactor, spatialFactor, spatialFactor, cellColor);
             }
-            //Utils.log(String.format("%1d|%2d|%3d%4d", x*spatialSize,y*spatialSize, worldContainer.getSpatialFactor(), worldContainer.getSpatialFactor()));
         }
 
         /**
          * Drawing the debug penetration points of ray casting.
          */
-        shapeRenderer.end();
         drawPenetrationPoints();
 
 
-        // HITBOXES OF TILES AFFECTED BY COLLISION DETECTION
-        Gdx.gl.glEnable(GL20.GL_BLEND);
-        shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
-        {
-            shapeRenderer.setColor(0, 0.5f, 0.5f, 1);
-
-            /**
-             * vertical and horizontal components are separated here to show  which impact is bigger
-             */
-            Vector2 playerX = new Vector2(player.getVelocity().x, 0f).cpy().scl(player.getPlayerDelta()).scl(25);
-            Vector2 playerY = new Vector2(0f, player.getVelocity().y).cpy().scl(player.getPlayerDelta()).scl(25);
-
-            shapeRenderer.rectLine(player.getPosition(), player.getPosition().cpy().add(playerX), 5 * (1 / ppuX));
-            shapeRenderer.rectLine(player.getPosition(), player.getPosition().cpy().add(playerY), 5 * (1 / ppuY));
+        /**
+         * Player velocity, vertical and horizontal components are separated here to show which
+         * impact is bigger.
+         */
+        Vector2 playerX = new Vector2(player.getVelocity().x, 0f).scl(player.getPlayerDelta()).scl(25);
+        Vector2 playerY = new Vector2(0f, player.getVelocity().y).scl(player.getPlayerDelta()).scl(25);
+        debugGeometry.rectLine(player.getPosition(), playerX.add(player.getPosition()), 5 * (1 / ppuX), VELOCITY_COLOR);
+        debugGeometry.rectLine(player.getPosition(), playerY.add(player.getPosition()), 5 * (1 / ppuY), VELOCITY_COLOR);
 
-            shapeRenderer.setColor(1f, 0f, 0f, 0.5f);
-            for (Tile t : worldContainer.getCollisionTiles()) {
-                if (t != null) {
-                    shapeRenderer.rect(t.getPosition().x, t.getPosition().y, Tile.SIZE, Tile.SIZE);
-                }
+        // HITBOXES OF TILES AFFECTED BY COLLISION DETECTION
+        for (Tile t : worldContainer.getCollisionTiles()) {
+            if (t != null) {
+                debugGeometry.filledRect(t.getPosition().x, t.getPosition().y, Tile.SIZE, Tile.SIZE, 1f, 0f, 0f, 0.5f);
             }
         }
-        shapeRenderer.end();
-        Gdx.gl.glDisable(GL20.GL_BLEND);
     }
 
 
@@ -755,37 +819,22 @@ public class RenderingEngine extends Renderer {
         if(!player.getWeaponInventory().isHoldingAWeapon())
             return;
 
-
-        shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
-        Gdx.gl.glEnable(GL20.GL_BLEND);
-        if(player.getWeaponInventory().isHoldingAWeapon()) {
-            shapeRenderer.setColor(1f,0,0,0.33f);
-
-            for (Vector2 index : worldContainer.getHitHashCells()) {
-
-
-                //shapeRenderer.rect(index.x - BOX_SIZE / 2f, index.y - BOX_SIZE / 2f, BOX_SIZE, BOX_SIZE);
-                shapeRenderer.rect(index.x, index.y, worldContainer.getSpatialFactor(), worldContainer.getSpatialFactor());
-            }
-
-            shapeRenderer.setColor(1f,0f,1f,1f);
-            for(Vector2 point : worldContainer.getEntityPenetrationPoints()) {
-                shapeRenderer.rect(point.x - BOX_SIZE / 2f, point.y - BOX_SIZE / 2f, BOX_SIZE, BOX_SIZE);;
-
-            }
-
-            shapeRenderer.setColor(1,1f,0,1f);
-            for (Vector2 index : worldContainer.getPenetrationPoints()) {
-
-                shapeRenderer.rect(index.x - BOX_SIZE / 2f, index.y - BOX_SIZE / 2f, BOX_SIZE, BOX_SIZE);
-                //shapeRenderer.rect(index.x, index.y, worldContainer.getSpatialFactor(), worldContainer.getSpatialFactor());
-            }
-
+        float spatialFactor = worldContainer.getSpatialFactor();
+        IntArray hitHashCells = worldContainer.getHitHashCells();
+        for (int i = 0; i < hitHashCells.size; i++) {
+            int index = hitHashCells.get(i);
+            debugGeometry.filledRect(worldContainer.getCellXForIndex(index) * spatialFactor,
+                    worldContainer.getCellYForIndex(index) * spatialFactor,
+                    spatialFactor, spatialFactor, 1f, 0f, 0f, 0.33f);
         }
 
+        for (Vector2 point : worldContainer.getEntityPenetrationPoints()) {
+            debugGeometry.point(point.x, point.y, BOX_SIZE, Color.MAGENTA);
+        }
 
-        shapeRenderer.end();
-        Gdx.gl.glDisable(GL20.GL_BLEND);
+        for (Vector2 point : worldContainer.getPenetrationPoints()) {
+            debugGeometry.point(point.x, point.y, BOX_SIZE, Color.YELLOW);
+        }
     }
 
     public void resize(int w, int h) {
@@ -797,6 +846,16 @@ public class RenderingEngine extends Renderer {
         popUpRenderer.resize(w, h);
     }
 
+    /**
+     * Releases the GPU resources owned by the rendering engine.
+     */
+    public void dispose() {
+        debugGeometry.dispose();
+        tileChunkCache.dispose();
+        shapeRenderer.dispose();
+        debugBatch.dispose();
+    }
+
 
     // GETTER AND SETTER
     // ---------------------------------------------------------------------------------------------
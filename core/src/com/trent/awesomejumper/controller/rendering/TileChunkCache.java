@@ -0,0 +1,219 @@
+package com.trent.awesomejumper.controller.rendering;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.g2d.SpriteCache;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.Array;
+import com.trent.awesomejumper.controller.levelgeneration.RandomLevelGenerator;
+import com.trent.awesomejumper.tiles.Tile;
+
+import java.util.Arrays;
+
+/**
+ * Static geometry of the tile layer, baked into square chunks of CHUNK_SIZE * CHUNK_SIZE tiles.
+ * Every chunk is one cache of a SpriteCache, built once when the level is loaded. Rendering only
+ * draws the caches of the chunks overlapping the camera, no vertices are built per frame.
+ * If a tile changes, its chunk has to be invalidated with {@link #invalidate(int, int)} and is
+ * rebuilt before it is drawn the next time.
+ */
+public class TileChunkCache {
+
+    // MEMBERS & INSTANCES
+    // ---------------------------------------------------------------------------------------------
+
+    public static final int CHUNK_SIZE = 16;
+    private static final int NO_CACHE = -1;
+
+    private SpriteCache spriteCache;
+    private RandomLevelGenerator level;
+    private Array<TextureAtlas.AtlasRegion> wallTextures;
+    private Array<TextureAtlas.AtlasRegion> floorTextures;
+
+    private int chunksX = 0;
+    private int chunksY = 0;
+    private int[] cacheIDs = new int[0];
+    private int[] capacities = new int[0];      // sprites the cache of a chunk was defined with
+    private int[] spriteCounts = new int[0];    // sprites currently in the cache of a chunk
+    private boolean[] dirty = new boolean[0];
+    private int dirtyChunks = 0;
+
+    // METHODS & FUNCTIONS
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Bakes the tile layer of the level into chunks. Disposes the caches of the previous level.
+     */
+    public void build(RandomLevelGenerator level, Array<TextureAtlas.AtlasRegion> wallTextures,
+                      Array<TextureAtlas.AtlasRegion> floorTextures) {
+        dispose();
+        this.level = level;
+        this.wallTextures = wallTextures;
+        this.floorTextures = floorTextures;
+
+        chunksX = (level.getLevelWidth() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        chunksY = (level.getLevelHeight() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        int chunks = chunksX * chunksY;
+        cacheIDs = new int[chunks];
+        capacities = new int[chunks];
+        spriteCounts = new int[chunks];
+        dirty = new boolean[chunks];
+
+        // Every tile holds at most one sprite
+        spriteCache = new SpriteCache(Math.max(level.getLevelWidth() * level.getLevelHeight(), 1), false);
+        defineAllChunks();
+    }
+
+    /**
+     * Marks the chunk containing the tile (x,y) to be rebuilt before it is drawn the next time.
+     */
+    public void invalidate(int x, int y) {
+        if (spriteCache == null || x < 0 || y < 0 || x >= level.getLevelWidth() || y >= level.getLevelHeight())
+            return;
+        int chunk = x / CHUNK_SIZE + (y / CHUNK_SIZE) * chunksX;
+        if (!dirty[chunk]) {
+            dirty[chunk] = true;
+            dirtyChunks++;
+        }
+    }
+
+    /**
+     * Draws all chunks overlapping the rectangle of the given width and height centered at the
+     * camera position.
+     */
+    public void render(OrthographicCamera camera, float viewWidth, float viewHeight) {
+        if (spriteCache == null)
+            return;
+        if (dirtyChunks > 0)
+            rebuildDirtyChunks();
+
+        int startX = Math.max((int) Math.floor((camera.position.x - viewWidth / 2) / CHUNK_SIZE), 0);
+        int startY = Math.max((int) Math.floor((camera.position.y - viewHeight / 2) / CHUNK_SIZE), 0);
+        int endX = Math.min((int) Math.floor((camera.position.x + viewWidth / 2) / CHUNK_SIZE), chunksX - 1);
+        int endY = Math.min((int) Math.floor((camera.position.y + viewHeight / 2) / CHUNK_SIZE), chunksY - 1);
+
+        Gdx.gl.glEnable(GL20.GL_BLEND);
+        Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+        spriteCache.setProjectionMatrix(camera.combined);
+        spriteCache.begin();
+        for (int cx = startX; cx <= endX; cx++) {
+            for (int cy = startY; cy <= endY; cy++) {
+                int chunk = cx + cy * chunksX;
+                if (spriteCounts[chunk] > 0)
+                    spriteCache.draw(cacheIDs[chunk]);
+            }
+        }
+        spriteCache.end();
+        Gdx.gl.glDisable(GL20.GL_BLEND);
+    }
+
+    public void dispose() {
+        if (spriteCache != null) {
+            spriteCache.dispose();
+            spriteCache = null;
+        }
+        dirtyChunks = 0;
+    }
+
+    public int getChunkCount() {
+        return chunksX * chunksY;
+    }
+
+    /**
+     * Defines a new cache for every chunk. The sprite cache has to be empty.
+     */
+    private void defineAllChunks() {
+        Arrays.fill(dirty, false);
+        dirtyChunks = 0;
+        for (int chunk = 0; chunk < cacheIDs.length; chunk++) {
+            spriteCache.beginCache();
+            spriteCounts[chunk] = addTiles(chunk);
+            capacities[chunk] = spriteCounts[chunk];
+            cacheIDs[chunk] = spriteCache.endCache();
+        }
+    }
+
+    /**
+     * Redefines the caches of all invalidated chunks in place. A cache can not grow beyond the
+     * size it was defined with, so if a chunk gained sprites, all caches are built anew.
+     */
+    private void rebuildDirtyChunks() {
+        for (int chunk = 0; chunk < dirty.length; chunk++) {
+            if (dirty[chunk] && countSprites(chunk) > capacities[chunk]) {
+                spriteCache.clear();
+                Arrays.fill(cacheIDs, NO_CACHE);
+                defineAllChunks();
+                return;
+            }
+        }
+
+        for (int chunk = 0; chunk < dirty.length; chunk++) {
+            if (!dirty[chunk])
+                continue;
+            spriteCache.beginCache(cacheIDs[chunk]);
+            spriteCounts[chunk] = addTiles(chunk);
+            spriteCache.endCache();
+            dirty[chunk] = false;
+        }
+        dirtyChunks = 0;
+    }
+
+    /**
+     * Adds the sprites of all tiles in the chunk to the cache currently being defined.
+     *
+     * @return number of sprites added
+     */
+    private int addTiles(int chunk) {
+        int count = 0;
+        int startX = (chunk % chunksX) * CHUNK_SIZE;
+        int startY = (chunk / chunksX) * CHUNK_SIZE;
+        int endX = Math.min(startX + CHUNK_SIZE, level.getLevelWidth());
+        int endY = Math.min(startY + CHUNK_SIZE, level.getLevelHeight());
+
+        for (int x = startX; x < endX; x++) {
+            for (int y = startY; y < endY; y++) {
+                Tile tile = level.getTile(x, y);
+                TextureRegion region = getRegion(tile);
+                if (region == null)
+                    continue;
+                spriteCache.add(region, tile.getPosition().x, tile.getPosition().y, Tile.SIZE, Tile.SIZE);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int countSprites(int chunk) {
+        int count = 0;
+        int startX = (chunk % chunksX) * CHUNK_SIZE;
+        int startY = (chunk / chunksX) * CHUNK_SIZE;
+        int endX = Math.min(startX + CHUNK_SIZE, level.getLevelWidth());
+        int endY = Math.min(startY + CHUNK_SIZE, level.getLevelHeight());
+
+        for (int x = startX; x < endX; x++) {
+            for (int y = startY; y < endY; y++) {
+                if (getRegion(level.getTile(x, y)) != null)
+                    count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the texture region drawn for a tile, null if the tile is not drawn.
+     */
+    private TextureRegion getRegion(Tile tile) {
+        if (tile == null || tile.getType() == null)
+            return null;
+        switch (tile.getType()) {
+            case WALL:
+                return wallTextures.get(tile.tileIndex);
+            case FLOOR:
+                return floorTextures.get(0);
+            default:
+                return null;
+        }
+    }
+}
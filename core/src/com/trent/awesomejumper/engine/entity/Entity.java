@@ -4,6 +4,7 @@ import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.utils.Array;
 import com.trent.awesomejumper.controller.entitymanagement.EntityManager;
+import com.trent.awesomejumper.controller.entitymanagement.EntityRegistry;
 import com.trent.awesomejumper.controller.WorldController;
 import com.trent.awesomejumper.engine.modelcomponents.Body;
 import com.trent.awesomejumper.engine.modelcomponents.Graphics;
@@ -12,8 +13,7 @@ import com.trent.awesomejumper.engine.modelcomponents.WeaponInventory;
 import com.trent.awesomejumper.engine.modelcomponents.weapons.GunComponent;
 import com.trent.awesomejumper.engine.physics.CollisionBox;
 
-import java.util.HashSet;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Arrays;
 
 import static com.trent.awesomejumper.engine.modelcomponents.ModelComponent.ComponentID.*;
 import static com.trent.awesomejumper.engine.modelcomponents.ModelComponent.ComponentID;
@@ -27,9 +27,7 @@ public class Entity implements EntityInterface {
     // MEMBERS & INSTANCES
     // ---------------------------------------------------------------------------------------------
 
-    private static AtomicInteger idCounter = new AtomicInteger();
-
-    private final int ID;
+    private int ID = EntityRegistry.NO_HANDLE;     // handle in the entity registry of the world
 
 
     public static int entityCount = 0;
@@ -70,7 +68,10 @@ public class Entity implements EntityInterface {
 
     }
 
-    protected HashSet<ComponentID> components;
+    protected long componentMask = 0L;      // one bit per enabled component, see ComponentID.mask
+    private long queryMembership = 0L;      // one bit per entity query this entity is part of
+    private int[] querySlots = new int[0];  // slot in the member list of each entity query
+    private int listIndex = -1;             // slot in the entity list of the world
 
     public State state;
 
@@ -85,9 +86,7 @@ public class Entity implements EntityInterface {
 
     public Entity() {
         time = WorldController.worldTime;
-        components = new HashSet<>();
         entityCount++;
-        ID = createID();
         owner = this;
     }
 
@@ -192,8 +191,12 @@ public class Entity implements EntityInterface {
 
     @Override
     public void destroy() {
+        if (!alive)
+            return;
         alive = false;
         entityCount--;
+        if (EntityManager.getInstance() != null)
+            EntityManager.getInstance().onEntityDestroyed(this);
     }
 
     @Override
@@ -267,10 +270,53 @@ public class Entity implements EntityInterface {
 
 
     public boolean has(ComponentID componentID) {
-        return components.contains(componentID);
+        return (componentMask & componentID.mask) != 0;
+    }
+
+    public boolean hasAll(long mask) {
+        return (componentMask & mask) == mask;
     }
+
+    /**
+     * Enables the component and updates the entity queries of the world if this entity is already
+     * registered there.
+     */
     public void enableComponent(ComponentID id) {
-        components.add(id);
+        if (has(id))
+            return;
+        componentMask |= id.mask;
+        if (EntityManager.getInstance() != null)
+            EntityManager.getInstance().onComponentsChanged(this);
+    }
+
+    public long getComponentMask() {
+        return componentMask;
+    }
+
+    public long getQueryMembership() {
+        return queryMembership;
+    }
+
+    public void setQueryMembership(long queryMembership) {
+        this.queryMembership = queryMembership;
+    }
+
+    public int getQuerySlot(int query) {
+        return querySlots[query];
+    }
+
+    public void setQuerySlot(int query, int slot) {
+        if (query >= querySlots.length)
+            querySlots = Arrays.copyOf(querySlots, query + 1);
+        querySlots[query] = slot;
+    }
+
+    public int getListIndex() {
+        return listIndex;
+    }
+
+    public void setListIndex(int listIndex) {
+        this.listIndex = listIndex;
     }
 
 
@@ -290,14 +336,18 @@ public class Entity implements EntityInterface {
     // ---------------------------------------------------------------------------------------------
 
 
-    private int createID() {
-        return idCounter.incrementAndGet();
-    }
-
+    /**
+     * Returns the handle of this entity in the entity registry of the world. The handle is assigned
+     * on registration and becomes stale once the entity has been removed from the world.
+     */
     public int getID() {
         return ID;
     }
 
+    public void setID(int ID) {
+        this.ID = ID;
+    }
+
 
     // TYPE OF ENTITY
     // ---------------------------------------------------------------------------------------------
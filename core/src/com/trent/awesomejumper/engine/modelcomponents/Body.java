@@ -4,18 +4,17 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.utils.Array;
 import com.sun.scenario.effect.impl.state.LinearConvolveKernel;
+import com.trent.awesomejumper.controller.entitymanagement.EntityManager;
 import com.trent.awesomejumper.engine.entity.Entity;
 import com.trent.awesomejumper.engine.physics.CollisionBox;
-import com.trent.awesomejumper.models.projectile.Projectile;
 
-import java.util.HashSet;
 import java.util.LinkedList;
 
 /**
  * Created by edisontrent1337 on 09.12.2015.
  * Body component implementation. Holds information about position (x,y,zOffset) , acceleration, velocity and
  * dimensions of entities. Also holds the hitbox skeleton used to calculate damage.
- * Also holds information about the entity neighbourhood of the entity that holds this very body.
+ * Also keeps track of the hash cells the body occupies in the spatial hashing grid.
  */
 public class Body extends ModelComponent {
 
@@ -40,7 +39,13 @@ public class Body extends ModelComponent {
     private boolean collisionDetectionEnabled = true;       // is cd enabled?
     private Array<CollisionBox> hitboxSkeleton = new Array<>();     // hitboxes
     private LinkedList<Vector2> impulses = new LinkedList<>();      // impulse list
-    private HashSet<Entity> entityNeighbourHood = new HashSet<>();  // entity neighbourhood
+
+    // Spatial hashing
+    private int cellStartX, cellStartY;                     // lower left hash cell covered by the bounds
+    private int cellEndX, cellEndY;                         // upper right hash cell covered by the bounds
+    private boolean inSpatialGrid = false;                  // is the body bucketed in the spatial grid?
+    private int queryStamp = 0;                             // last spatial query that reported this body
+    private int broadphaseProxy = -1;                       // proxy id in the broad phase, -1 if not added
 
     // Physical parameters
     private float mass;
@@ -108,13 +113,13 @@ public class Body extends ModelComponent {
 
     public void update(float delta) {
 
-        if(entity.getClass().equals(Projectile.class)) {
+        if(entity.has(ComponentID.PROJECTILE)) {
             Gdx.app.log("VELO LEN", Float.toString(velocity.cpy().scl(delta).len()));
         }
 
         position.add(velocity.cpy().scl(delta));
 
-        if(entity.getClass().equals(Projectile.class)) {
+        if(entity.has(ComponentID.PROJECTILE)) {
             Gdx.app.log("POSITION", position.toString());
         }
 
@@ -122,7 +127,8 @@ public class Body extends ModelComponent {
          * If collision detection on this body is enabled, the bounds collision box will be updated
          */
         bounds.update(position);
-        center.set(bounds.getPositionAndOffset().x + getHalfDimensions().x, bounds.getPositionAndOffset().y + getHalfDimensions().y);
+        center.set(bounds.getPosition().x + bounds.getOffset().x + bounds.getWidth()/2f,
+                bounds.getPosition().y + bounds.getOffset().y + bounds.getHeight()/2f);
 
 
         /**
@@ -132,6 +138,12 @@ public class Body extends ModelComponent {
             b.update(position);
         }
 
+        /**
+         * Move the entity to other hash cells if it left the ones it occupied before.
+         */
+        if (entity.isAlive() && EntityManager.getInstance() != null)
+            EntityManager.getInstance().updateSpatialData(entity);
+
     }
 
 
@@ -435,10 +447,59 @@ public class Body extends ModelComponent {
         return collisionDetectionEnabled;
     }
 
-    // ENTITY NEIGHBOURHOOD
+    // SPATIAL HASHING
+
+    public boolean isInSpatialGrid() {
+        return inSpatialGrid;
+    }
+
+    public int getCellStartX() {
+        return cellStartX;
+    }
+
+    public int getCellStartY() {
+        return cellStartY;
+    }
+
+    public int getCellEndX() {
+        return cellEndX;
+    }
+
+    public int getCellEndY() {
+        return cellEndY;
+    }
+
+    /**
+     * Stores the range of hash cells the bounds of this body currently occupy.
+     */
+    public void setSpatialCellRange(int startX, int startY, int endX, int endY) {
+        this.cellStartX = startX;
+        this.cellStartY = startY;
+        this.cellEndX = endX;
+        this.cellEndY = endY;
+        this.inSpatialGrid = true;
+    }
+
+    public void clearSpatialCellRange() {
+        inSpatialGrid = false;
+    }
+
+    public int getQueryStamp() {
+        return queryStamp;
+    }
+
+    public void setQueryStamp(int queryStamp) {
+        this.queryStamp = queryStamp;
+    }
+
+    // BROAD PHASE
+
+    public int getBroadphaseProxy() {
+        return broadphaseProxy;
+    }
 
-    public HashSet<Entity> getEntityNeighbourHood() {
-        return entityNeighbourHood;
+    public void setBroadphaseProxy(int broadphaseProxy) {
+        this.broadphaseProxy = broadphaseProxy;
     }
     // ---------------------------------------------------------------------------------------------
     // METHODS AND FUNCTIONS
@@ -1,13 +1,10 @@
 package com.trent.awesomejumper.engine.modelcomponents;
 
 import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.g2d.Animation;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
-import com.badlogic.gdx.math.Matrix4;
 import com.badlogic.gdx.utils.Array;
 import com.trent.awesomejumper.controller.rendering.RenderingEngine;
 import com.trent.awesomejumper.engine.entity.Entity;
@@ -37,8 +34,6 @@ public class Graphics extends ModelComponent {
     private boolean supportsRotation = false, supportsShadowRotation = true;
     private boolean visible = false;
 
-    private ShapeRenderer hpRenderer;
-
     private final float HEALTH_BAR_WIDTH = 1f;
     private final float HEALTH_BAR_HEIGHT = 0.075f;
     private final float HEALTH_BAR_YOFFSET = 0.7f;
@@ -73,8 +68,6 @@ public class Graphics extends ModelComponent {
         // Enable graphics component
         entity.enableComponent(ComponentID.GRAPHICS);
         visible = true;
-
-        hpRenderer = new ShapeRenderer();
     }
 
 
@@ -162,31 +155,26 @@ public class Graphics extends ModelComponent {
             sb.draw(currentFrame, x, y + entity.getBody().getZOffset(), width, height);
         }
 
-        /**
-         * HP BAR Rendering
-         */
-        sb.end();
-
-        /*hpRenderer.setProjectionMatrix(sb.getProjectionMatrix());
-        hpRenderer.begin(ShapeRenderer.ShapeType.Point);
-        hpRenderer.point(entity.getBody().getCenter().x,entity.getBody().getCenter().y,0);
-        hpRenderer.end();*/
-
-
-            {
-                if(entity.has(ComponentID.HEALTH))
-                renderHealthBar(sb.getProjectionMatrix());
-            }
-
-        sb.begin();
-
-
         //TODO Draw head separately from body and let it rotate towards mouse
     }
 
+    /**
+     * Returns whether a health bar has to be drawn for the entity. Only visible entities that
+     * are hurt show their health bar.
+     */
+    public boolean hasHealthBar() {
+        return visible && entity.has(ComponentID.HEALTH)
+                && entity.getHealth().getHp() != entity.getHealth().getMaxHp();
+    }
 
-    //TODO: documentation !
-    private void renderHealthBar(Matrix4 projectionMatrix) {
+    /**
+     * Draws the health bar of the entity above it and updates its fade out.
+     * The health bars of all entities are drawn in one pass after the sprites, so the shape
+     * renderer has to be started in filled mode with blending enabled by the caller.
+     *
+     * @param hpRenderer shape renderer shared by all health bars
+     */
+    public void renderHealthBar(ShapeRenderer hpRenderer) {
             Health health = entity.getHealth();
             if (health.getHp() == health.getMaxHp())
                 return;
@@ -215,16 +203,10 @@ public class Graphics extends ModelComponent {
             }
 
 
-            Gdx.gl.glEnable(GL20.GL_BLEND);
-            Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
-
             float x =(int) Math.floor((entity.getBody().getCenter().x - HEALTH_BAR_WIDTH / 2)*RenderingEngine.ppuX)/RenderingEngine.ppuX;
             float y =(int) Math.floor((entity.getBody().getCenter().y + HEALTH_BAR_YOFFSET)*RenderingEngine.ppuY)/RenderingEngine.ppuY;
 
-            hpRenderer.setProjectionMatrix(projectionMatrix);
-            hpRenderer.begin(ShapeRenderer.ShapeType.Filled);
-
-            hpRenderer.setColor(new Color(1, 0, 0, healthBarAlpha));
+            hpRenderer.setColor(1, 0, 0, healthBarAlpha);
             hpRenderer.rect(x, y, HEALTH_BAR_WIDTH, HEALTH_BAR_HEIGHT);
 
             float width = health.getHp() / health.getMaxHp();
@@ -234,13 +216,13 @@ public class Graphics extends ModelComponent {
             hpRenderer.rect(x,y,width,HEALTH_BAR_HEIGHT);
 
 
-            hpRenderer.setColor(new Color(0, 1, 0, healthBarAlpha));
+            hpRenderer.setColor(0, 1, 0, healthBarAlpha);
            /* for (int i = 0; i < squares; i++) {
                 hpRenderer.rect(x + i*0.1f,y, 0.085f,HEALTH_BAR_HEIGHT);
             }
                 hpRenderer.rect(x + (squares)*0.1f,y, remainder,HEALTH_BAR_HEIGHT);*/
             hpRenderer.rect(x,y, health.getHp() / health.getMaxHp(), HEALTH_BAR_HEIGHT);
-            hpRenderer.setColor(new Color(74f/255, 97f/255, 63/255f, healthBarAlpha));
+            hpRenderer.setColor(74f/255, 97f/255, 63/255f, healthBarAlpha);
             hpRenderer.rect(x,y, health.getHp() / health.getMaxHp(), HEALTH_BAR_HEIGHT/4f);
 
             hpRenderer.setColor(1,1,0,healthBarAlpha);
@@ -249,10 +231,6 @@ public class Graphics extends ModelComponent {
                 hpRenderer.rect(x + width, y, (1-progress*progress*progress) * (health.getLastDamage() / health.getMaxHp()), HEALTH_BAR_HEIGHT);
                 //Gdx.app.log("PRO", Double.toString(((float) Math.pow(2, -progress*progress)) * (health.getLastDamage() / health.getMaxHp())));
             }
-
-            hpRenderer.end();
-
-            Gdx.gl.glDisable(GL20.GL_BLEND);
     }
 
 
@@ -1,10 +1,7 @@
 package com.trent.awesomejumper.engine.modelcomponents;
 
-import com.badlogic.gdx.Gdx;
 import com.trent.awesomejumper.controller.rendering.PopUpRenderer;
-import com.trent.awesomejumper.controller.WorldController;
 import com.trent.awesomejumper.engine.entity.Entity;
-import com.trent.awesomejumper.engine.modelcomponents.popups.Message;
 
 import java.util.Random;
 
@@ -59,25 +56,24 @@ public class Health extends ModelComponent {
 
         if (entity.time - tookDamageAt < INVINCIBILITY_TIME)
             return false;
-        Message message;
 
+        /**
+         * Access popup manager globally to add damage popup. There is none if the world is
+         * simulated without graphics.
+         */
+        PopUpRenderer popUps = PopUpRenderer.getInstance();
         if (random.nextInt(100) > 95) {
             dmg *= 1.25f;
             hp -= dmg;
-            message = new Message("-" + Integer.toString(dmg), entity.getBody().getCenter(), WorldController.worldTime, 1.5f);
-            PopUpRenderer.getInstance().addMessageToCategory(PopUpRenderer.PopUpCategories.CRT, message);
-            Gdx.app.log("CRIT","YEA");
+            if (popUps != null)
+                popUps.addDamage(PopUpRenderer.PopUpCategories.CRT, entity.getID(), entity.getBody().getCenter(), dmg, 1.5f);
         } else {
 
             hp -= dmg;
-            message = new Message("-" + Integer.toString(dmg), entity.getBody().getCenter(), WorldController.worldTime, 1.50f);
-            PopUpRenderer.getInstance().addMessageToCategory(PopUpRenderer.PopUpCategories.DMG, message);
+            if (popUps != null)
+                popUps.addDamage(PopUpRenderer.PopUpCategories.DMG, entity.getID(), entity.getBody().getCenter(), dmg, 1.50f);
         }
 
-
-        /**
-         * Access popup manager globally to add damage popup.
-         */
         if (hp <= 0) {
             hp = 0;
             entity.setState(Entity.State.DEAD);
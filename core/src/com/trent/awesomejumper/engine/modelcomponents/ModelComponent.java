@@ -12,14 +12,27 @@ public abstract class ModelComponent {
     protected String TAG;
 
     /**
-     * Enum used to identify components of entities.
+     * Enum used to identify components of entities. Each id owns one bit of the component mask
+     * of an entity.
+     * Marker ids carry no data and only tag entities, so queries can tell them apart.
      */
     public enum ComponentID {
         BODY,
         GRAPHICS,
         HEALTH,
         WEAPON_INVENTORY,
-        WEAPON_COMPONENT;
+        WEAPON_COMPONENT,
+        // markers
+        PROJECTILE;
+
+        public final long mask = 1L << ordinal();
+
+        public static long maskOf(ComponentID... ids) {
+            long mask = 0L;
+            for (ComponentID id : ids)
+                mask |= id.mask;
+            return mask;
+        }
     }
 
 
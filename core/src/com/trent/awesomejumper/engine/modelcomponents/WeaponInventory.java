@@ -2,20 +2,21 @@ package com.trent.awesomejumper.engine.modelcomponents;
 
 import com.badlogic.gdx.math.Vector2;
 import com.trent.awesomejumper.controller.entitymanagement.EntityManager;
+import com.trent.awesomejumper.controller.entitymanagement.EntityRegistry;
 import com.trent.awesomejumper.controller.rendering.PopUpRenderer;
 import com.trent.awesomejumper.engine.entity.Entity;
-import com.trent.awesomejumper.engine.modelcomponents.popups.Message;
 import com.trent.awesomejumper.models.weapons.Weapon;
 import com.trent.awesomejumper.utils.Utils;
 
 import static com.trent.awesomejumper.controller.rendering.PopUpRenderer.PopUpCategories.*;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Weapon inventory component for all entities that can carry weapons. Entities that want to attack in any
  * form need an instance of this ModelComponent.
- * Holds a reference to all weapon entities that are held by the owner of this weapon inventory.
+ * Holds the handles of all weapon entities that are held by the owner of this weapon inventory.
+ * A weapon removed from the world leaves a stale handle, which is treated as an empty slot.
  * Created by Sinthu on 09.12.2015.
  */
 public class WeaponInventory extends ModelComponent {
@@ -25,11 +26,11 @@ public class WeaponInventory extends ModelComponent {
 
     private Weapon selectedWeapon;               // currently selected weapon entity
     private static int MAX_SLOTS = 3;            // number of weapon slots this inventory has
-    private static final int NO_WEAPON = -1;     // constant representing id of no weapon
+    private static final int NO_WEAPON = EntityRegistry.NO_HANDLE;  // handle representing no weapon
 
     private final float WEAPON_DISTANCE = 0.50f;
 
-    private ArrayList<Integer> weapons;
+    private int[] weapons;
 
     private boolean holdingAWeapon = false;
     private int inventoryPointer = 0;           // points to the weapon currently being held
@@ -45,12 +46,9 @@ public class WeaponInventory extends ModelComponent {
 
     public WeaponInventory(Entity entity) {
         this.entity = entity;
-        this.weapons = new ArrayList<>(MAX_SLOTS);
+        this.weapons = new int[MAX_SLOTS];
         entity.enableComponent(ComponentID.WEAPON_INVENTORY);
-
-        for (int i = 0; i < MAX_SLOTS; i++) {
-            weapons.add(NO_WEAPON);
-        }
+        Arrays.fill(weapons, NO_WEAPON);
 
     }
 
@@ -121,7 +119,7 @@ public class WeaponInventory extends ModelComponent {
             // Iterating through all slots to find an empty one.
             for (int slot = 0; slot < MAX_SLOTS; slot++) {
                 // If the current slot is empty, save the weapon here and hide it.
-                if (weapons.get(slot) == NO_WEAPON) {
+                if (weapons[slot] == NO_WEAPON) {
                     weapon.hide();
                     saveWeapon(weapon.getID(), slot);
                 }
@@ -133,7 +131,7 @@ public class WeaponInventory extends ModelComponent {
              * auto equipped and shown.
              */
             if (weaponsEquipped == MAX_SLOTS) {
-                selectedWeaponID = weapons.get(inventoryPointer);
+                selectedWeaponID = weapons[inventoryPointer];
                 selectedWeapon = (Weapon) EntityManager.getInstance().getEntityByID(selectedWeaponID);
                 selectedWeapon.show();
                 selectedWeapon.getBody().disableCollisionDetection();
@@ -165,8 +163,8 @@ public class WeaponInventory extends ModelComponent {
         Utils.log("INVENTORY POINTER", Integer.toString(inventoryPointer));
         Utils.log("CURRENT WEAPON ID", Integer.toString(selectedWeaponID));*/
 
-        Message equipMessage = new Message(weapon.getName(), entity.getBody().getCenter(), entity.time, 1.00f);
-        PopUpRenderer.getInstance().addMessageToCategory(MISC, equipMessage);
+        if (PopUpRenderer.getInstance() != null)
+            PopUpRenderer.getInstance().addMessage(MISC, weapon.getName(), entity.getBody().getCenter(), 1.00f);
 
         equipTime = entity.time;
         if (weaponsEquipped == MAX_SLOTS)
@@ -202,7 +200,7 @@ public class WeaponInventory extends ModelComponent {
         }
         // Moving to the next slot and getting the saved weapon
         inventoryPointer = (inventoryPointer + direction + MAX_SLOTS) % MAX_SLOTS;
-        selectedWeaponID = weapons.get(inventoryPointer);
+        selectedWeaponID = weapons[inventoryPointer];
         /**
          * If the next weapon slot contains a weapon, get it from the entity manager,
          * show it and disable collision detection.
@@ -228,15 +226,11 @@ public class WeaponInventory extends ModelComponent {
     }
 
     private void saveWeapon(int id, int currentSlot) {
-        if (!weapons.contains(id)) {
-            weapons.set(currentSlot, id);
-
-        }
-        // Utils.log("SAVED WEAPONS", "LIST");
-        for (Integer i : weapons) {
-            // Utils.log("WEAPON ID", Integer.toString(i));
+        for (int slot = 0; slot < weapons.length; slot++) {
+            if (weapons[slot] == id)
+                return;
         }
-
+        weapons[currentSlot] = id;
     }
 
 
@@ -255,10 +249,15 @@ public class WeaponInventory extends ModelComponent {
         Vector2 weaponDirection = entity.getBody().getOrientation().cpy();
         weaponDirection.nor().scl(WEAPON_DISTANCE);
 
-        for (Integer weaponID : weapons) {
-            if (weaponID == NO_WEAPON)
+        for (int slot = 0; slot < weapons.length; slot++) {
+            if (weapons[slot] == NO_WEAPON)
+                continue;
+            Weapon w = (Weapon) EntityManager.getInstance().getEntityByID(weapons[slot]);
+            if (w == null) {
+                // The weapon was removed from the world, its handle is stale
+                weapons[slot] = NO_WEAPON;
                 continue;
-            Weapon w = (Weapon) EntityManager.getInstance().getEntityByID(weaponID);
+            }
             w.getBody().setPosition(entity.getBody().getCenter().cpy().sub(w.getBody().getHalfDimensions()));
             w.getBody().setAimReference(entity.getBody().getAimReference());
             w.getBody().setOrientation(entity.getBody().getOrientation());
@@ -295,7 +294,7 @@ public class WeaponInventory extends ModelComponent {
                 drop.register();
                /* Message message = new Message(drop.getPosition().toString(),drop.getBody().getCenter(),drop.time,3.00f);
                 PopUpRenderer.getInstance().addMessageToCategory(MISC,message);*/
-                weapons.set(inventoryPointer, NO_WEAPON);
+                weapons[inventoryPointer] = NO_WEAPON;
                 weaponsEquipped--;
                 holdingAWeapon = false;
                 selectedWeaponID = NO_WEAPON;
@@ -330,6 +329,8 @@ public class WeaponInventory extends ModelComponent {
 
     public void increaseCapacity() {
         MAX_SLOTS++;
+        weapons = Arrays.copyOf(weapons, MAX_SLOTS);
+        weapons[MAX_SLOTS - 1] = NO_WEAPON;
     }
 
 
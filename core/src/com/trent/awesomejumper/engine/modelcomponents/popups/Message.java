@@ -5,13 +5,18 @@ import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Pool;
 
 /**
  * Created by Sinthu on 13.12.2015.
  * Graphical representation of small game events. Holds information about entity events such as
  * taking damage, leveling up or other small messages that might be displayed.
+ * Messages are pooled by the PopUpRenderer. A message either shows a text or a numeric value, the
+ * latter can be merged with other values hitting the same target in the same frame.
  */
-public class Message<E> {
+public class Message<E> implements Pool.Poolable {
+
+    public static final int NO_TARGET = -1;
 
 
     private TextureRegion texture;
@@ -25,10 +30,23 @@ public class Message<E> {
 
     private Vector2 position;
 
+    private int value = 0;
+    private boolean numeric = false;
+    private int target = NO_TARGET;
+
 
 
     // CONSTRUCTOR
     // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates an empty message, used by the message pool.
+     */
+    public Message() {
+        this.duration = DEFAULT_DURATION;
+        this.color = DEFAULT_COLOR;
+    }
+
     public Message(String message, Vector2 position, float timeStamp) {
         this.message = message;
         this.position = position;
@@ -61,6 +79,54 @@ public class Message<E> {
 
     }
 
+    // POOLING
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Sets up a pooled message showing a text.
+     *
+     * @param position position the message follows, not copied
+     */
+    public Message<E> setText(String message, Vector2 position, float timeStamp, float duration) {
+        this.message = message;
+        this.position = position;
+        this.timeStamp = timeStamp;
+        this.duration = duration;
+        this.numeric = false;
+        return this;
+    }
+
+    /**
+     * Sets up a pooled message showing a numeric value for a target.
+     *
+     * @param target   ID of the entity the value belongs to, NO_TARGET if it is not bound to one
+     * @param position position the message follows, not copied
+     */
+    public Message<E> setValue(int value, int target, Vector2 position, float timeStamp, float duration) {
+        this.message = null;
+        this.value = value;
+        this.target = target;
+        this.position = position;
+        this.timeStamp = timeStamp;
+        this.duration = duration;
+        this.numeric = true;
+        return this;
+    }
+
+    @Override
+    public void reset() {
+        message = null;
+        position = null;
+        texture = null;
+        messageData = null;
+        color = DEFAULT_COLOR;
+        duration = DEFAULT_DURATION;
+        timeStamp = 0f;
+        value = 0;
+        numeric = false;
+        target = NO_TARGET;
+    }
+
     // GETTER & SETTER
     // ---------------------------------------------------------------------------------------------
 
@@ -114,4 +180,20 @@ public class Message<E> {
         return position;
     }
 
+    public boolean isNumeric() {
+        return numeric;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    public void addValue(int value) {
+        this.value += value;
+    }
+
+    public int getTarget() {
+        return target;
+    }
+
 }
@@ -2,24 +2,18 @@ package com.trent.awesomejumper.engine.physics;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
 import com.badlogic.gdx.math.Vector2;
-import com.badlogic.gdx.utils.Array;
-import com.trent.awesomejumper.utils.Utils;
-
-import java.util.HashSet;
-
-import static com.trent.awesomejumper.utils.Utils.getNormal;
-import static com.trent.awesomejumper.utils.Utils.sub;
+import com.trent.awesomejumper.controller.rendering.DebugGeometry;
 
     /**
      * min = lower left corner
      * max = upper right corner
      * a,b,c,d = vertices
      * center = center of bounding box
-     * vertices = array that holds all vertices of the shape
-     * edges = array that holds all edges of the shape
-     * normals = array that holds all normals of the shape
+     * vertices = packed (x,y) array that holds all vertices of the shape in world space
+     * localVertices = packed (x,y) array of the vertices relative to position, without offset
+     * edges = packed (x,y) array that holds all edges of the shape
+     * normals = packed (x,y) array that holds all unit normals of the shape
      *
      *
      *             n1
@@ -35,6 +29,9 @@ import static com.trent.awesomejumper.utils.Utils.sub;
 /**
  * CollisionBox class representing hit boxes for every entity with physical attributes or the need
  * to resolve collisions.
+ * The geometry is held in packed float arrays. Edges, normals and local vertices never change
+ * after construction, the world space vertices are only recomputed by update() if position or
+ * offset changed since the last update.
  * Created by Sinthu on 03.07.2015.
  */
 public class CollisionBox {
@@ -57,11 +54,22 @@ public class CollisionBox {
     }
 
     private float width, height;
-    private Vector2 position, min, max, offset, center;
-    private Array<Vector2> edges, vertices, normals;
+    private Vector2 position, offset, center;
+
+    private int vertexCount;
+    private float[] localVertices;
+    private float[] vertices;
+    private float[] edges;
+    private float[] normals;
+    // position + offset the world space vertices were computed with
+    private float transformX, transformY;
 
     public BoxType type;
-    private Array<Vector2>vertexData;
+    /**
+     * True for boxes created by the rectangle constructor. Their edges never change, so they stay
+     * axis aligned and vertex 0 / vertex 2 are always the lower left / upper right corner.
+     */
+    private boolean axisAligned = false;
     // DEBUG DRAWING CONSTANTS
 
     private final float VSIZE = 0.05f;          // size of a vertex for drawing purposes
@@ -85,11 +93,10 @@ public class CollisionBox {
 
         this.position = position;
         this.offset = new Vector2(0f,0f);
-        this.min = position.cpy();
-        this.max = new Vector2(position.cpy().x + width, position.cpy().y + height);
         this.width = width;
         this.height = height;
         this.type = BoxType.RECTANGLE;
+        this.axisAligned = true;
         this.center = new Vector2(position.x + width/2f, position.y + height/2f);
 
         // VERTICES
@@ -98,15 +105,16 @@ public class CollisionBox {
         /**
          * Adding all vertices starting from the bottom left corner.
          */
-        this.vertices = new Array<>(type.VERTICES);
-        this.vertexData = new Array<>(type.VERTICES);
-        vertices.add(min);
-        vertices.add(new Vector2(min.x, max.y));
-        vertices.add(max);
-        vertices.add(new Vector2(max.x, min.y));
-        vertexData.addAll(vertices);
+        this.vertexCount = type.VERTICES;
+        this.localVertices = new float[] {
+                0f, 0f,
+                0f, height,
+                width, height,
+                width, 0f
+        };
 
         addEdgesAndNormals();
+        applyTransform();
 
     }
 
@@ -123,48 +131,28 @@ public class CollisionBox {
         this.position = position;
         this.width = width;
         this.height = height;
-        this.min = new Vector2(0f,0f);
-        this.max = new Vector2(0f,0f);
         this.offset = new Vector2(0f,0f);
         this.type = type;
 
-        this.vertices = new Array<>(type.VERTICES);
+        this.vertexCount = vertexData.length / 2;
+        this.localVertices = new float[vertexData.length];
 
+        /**
+         * The vertices are stored relative to the first one, which sits at the position of the box.
+         */
+        float centroidX = 0f, centroidY = 0f;
         for(int i = 0; i < vertexData.length; i+=2) {
             // The values in the vertexData array should come in (x,y) tuples.
-            Gdx.app.log("SIZE", Integer.toString(vertices.size));
-            float x = vertexData[i];
-            float y = vertexData[i + 1];
-
-            /**
-             * Get the last vertex in vertices and add the new data on top of it to create the next
-             * vertex. Finally add the next vertex to the vertices array.
-             */
-            Vector2 temp = new Vector2(x, y).add(position);
-
-            Gdx.app.log("LAST VERTEX", temp.toString());
-            vertices.add(temp);
-
-            if(temp.x < min.x)
-                min.x = temp.x;
-            if(temp.y < min.y)
-                min.y = temp.y;
-            if(temp.x > max.x)
-                max.x = temp.x;
-            if(temp.y > max.y)
-                max.y = temp.y;
-
-
+            Gdx.app.log("SIZE", Integer.toString(i / 2));
+            localVertices[i] = vertexData[i] - vertexData[0];
+            localVertices[i + 1] = vertexData[i + 1] - vertexData[1];
+            centroidX += vertexData[i] + position.x;
+            centroidY += vertexData[i + 1] + position.y;
         }
-
-        Vector2 centroid = new Vector2();
-        for(Vector2 v : vertices) {
-            centroid.add(v);
-        }
-        centroid.scl(1f/vertices.size);
-        this.center = centroid;
+        this.center = new Vector2(centroidX / vertexCount, centroidY / vertexCount);
 
         addEdgesAndNormals();
+        applyTransform();
 
     }
 
@@ -176,64 +164,72 @@ public class CollisionBox {
     // ---------------------------------------------------------------------------------------------
 
     /**
-     * Adds edges and normals to the corresponding collections.
+     * Calculates edges and normals from the local vertices.
      */
     private void addEdgesAndNormals() {
-        this.edges = new Array<>();
-        this.normals = new Array<>();
-        for (int i = 0; i < vertices.size; i++) {
-            edges.add(sub(vertices.get(i), vertices.get((i + 1) % vertices.size)));
-            normals.add(getNormal(edges.get(i)));
+        this.edges = new float[2 * vertexCount];
+        this.normals = new float[2 * vertexCount];
+        for (int i = 0; i < vertexCount; i++) {
+            int next = (i + 1) % vertexCount;
+            float edgeX = localVertices[2 * next] - localVertices[2 * i];
+            float edgeY = localVertices[2 * next + 1] - localVertices[2 * i + 1];
+            edges[2 * i] = edgeX;
+            edges[2 * i + 1] = edgeY;
+
+            // normal = (-e.y, e.x), normalized
+            float length = (float) Math.sqrt(edgeX * edgeX + edgeY * edgeY);
+            if (length != 0f) {
+                normals[2 * i] = -edgeY / length;
+                normals[2 * i + 1] = edgeX / length;
+            }
         }
 
+    }
 
+    /**
+     * Moves the world space vertices to position + offset and stores the transform.
+     */
+    private void applyTransform() {
+        transformX = position.x + offset.x;
+        transformY = position.y + offset.y;
+        if (vertices == null)
+            vertices = new float[localVertices.length];
+        for (int i = 0; i < localVertices.length; i += 2) {
+            vertices[i] = transformX + localVertices[i];
+            vertices[i + 1] = transformY + localVertices[i + 1];
+        }
     }
 
     // DRAW
     // ---------------------------------------------------------------------------------------------
     /** Draws the outline, the vertices and the normals of the collisionBox
-     * @param renderer Instance of the libGdx ShapeRenderer Class used to draw the CollisionBox
+     * @param geometry debug geometry collector of the current frame the CollisionBox is added to
      */
-    public void draw(ShapeRenderer renderer) {
-        // DRAW OUTER BOUNDING BOX
-        renderer.set(ShapeRenderer.ShapeType.Line);
-        renderer.setAutoShapeType(true);
-        renderer.setColor(color);
-
+    public void draw(DebugGeometry geometry) {
         // DRAW NORMALS & EDGES
-        for (int i = 0; i < edges.size; i++) {
+        for (int i = 0; i < 2 * vertexCount; i += 2) {
             // GRAB CURRENT VERTEX, EDGE, NORMAL
-            Vector2 edge = edges.get(i);
-            Vector2 vertex = vertices.get(i);
-            Vector2 normal = normals.get(i);
+            float vertexX = vertices[i], vertexY = vertices[i + 1];
+            float edgeX = edges[i], edgeY = edges[i + 1];
 
             // DRAW EDGES
             // VERTEX + EDGE INFORMATION
-            renderer.line(vertex, vertex.cpy().add(edge));
+            geometry.line(vertexX, vertexY, vertexX + edgeX, vertexY + edgeY, color);
 
             // DRAW NORMALS
             /**
-             *  This method uses vector addition to calculate the start and end of
-             *  the normal to be drawn.
              *  start = v + 0.5*e
              *  end = v + 0.5*e + 0.25*n
              */
+            float startX = vertexX + edgeX * 0.5f;
+            float startY = vertexY + edgeY * 0.5f;
+            geometry.line(startX, startY, startX + normals[i] * NORMAL_LENGTH, startY + normals[i + 1] * NORMAL_LENGTH,
+                    Color.BLUE, Color.RED);
 
-            Vector2 nStart = vertex.cpy().add(edge.cpy().scl(0.5f));
-            Vector2 nEnd = vertex.cpy().add(edge.cpy().scl(0.5f)).add(normal.cpy().scl(NORMAL_LENGTH));
-            renderer.line(nStart.x, nStart.y, nEnd.x, nEnd.y, Color.BLUE, Color.RED);
-
-        }
-
-        renderer.set(ShapeRenderer.ShapeType.Filled);
-        renderer.setColor(Color.GRAY);
-        for (Vector2 v : vertices) {
-            renderer.rect(v.x - VHALF, v.y - VHALF, VSIZE, VSIZE);
+            geometry.filledRect(vertexX - VHALF, vertexY - VHALF, VSIZE, VSIZE, Color.GRAY);
         }
 
-        renderer.rect(center.x- VHALF,center.y - VHALF, VSIZE,VSIZE);
-
-        renderer.setColor(color);
+        geometry.filledRect(center.x - VHALF, center.y - VHALF, VSIZE, VSIZE, Color.GRAY);
     }
 
     // UPDATE POSITION OF BOUNDS AND VERTICES
@@ -241,45 +237,18 @@ public class CollisionBox {
     /**
      * Updates the position of the collisionBox in the world. Position is set to the position of the
      * object that holds this collisionBox. An offset is added.
+     * The vertices are only moved if position or offset changed since the last update.
      * @param newPosition  position of the entity that owns this very CollisionBox
      */
     public void update(Vector2 newPosition) {
 
         position.set(newPosition);
-        center.set(newPosition.cpy().add((width + offset.cpy().x )/2f, (offset.cpy().y + height)/2f));
-        /**
-         * Iterate over all vertices, set their base position to position and add the "path" created
-         * by all edges combined to the new position of the vertex.
-         */
-
-        for(int i = 0; i < vertices.size; i++) {
-            vertices.get(i).set(position.cpy());
-            for(int y = 0; y < i; y++) {
-                vertices.get(i).add(edges.get(y));
-            }
-            /**
-             * Finally add the global collisionBox offset to each vertex.
-             */
-            vertices.get(i).add(offset);
-        }
-
-    }
+        if (position.x + offset.x == transformX && position.y + offset.y == transformY)
+            return;
 
+        center.set(position.x + (width + offset.x) / 2f, position.y + (offset.y + height) / 2f);
+        applyTransform();
 
-    public HashSet<Ray> getRays() {
-
-        HashSet<Ray> result = new HashSet<>();
-        Ray ray;
-        for(int i = 0; i < vertices.size; i++) {
-            Vector2 origin = vertices.get(i).cpy();
-            Vector2 direction = edges.get(i).cpy().nor();
-            float length = edges.get(i).cpy().len();
-            ray = new Ray(origin, direction,length);
-            Utils.log("GENERATED RAY: ", ray.toString());
-            result.add(ray);
-        }
-
-        return result;
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -323,27 +292,72 @@ public class CollisionBox {
         return height;
     }
 
+    /**
+     * Width and height are only used for the center of the box, the next update recomputes it.
+     */
     public void setWidth(float width) {
         this.width = width;
+        transformX = Float.NaN;
     }
     public void setHeight(float height) {
         this.height = height;
+        transformX = Float.NaN;
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    // World space vertex i
+    public float getVertexX(int i) {
+        return vertices[2 * i];
     }
 
-    public Array<Vector2> getVertices() {
-        return vertices;
+    public float getVertexY(int i) {
+        return vertices[2 * i + 1];
     }
 
-    public Array<Vector2> getEdges() {
-        return edges;
+    // Edge from vertex i to vertex i + 1
+    public float getEdgeX(int i) {
+        return edges[2 * i];
+    }
+
+    public float getEdgeY(int i) {
+        return edges[2 * i + 1];
+    }
+
+    // Unit normal of edge i
+    public float getNormalX(int i) {
+        return normals[2 * i];
+    }
+
+    public float getNormalY(int i) {
+        return normals[2 * i + 1];
     }
 
     public Vector2 getCenter() {
         return center;
     }
 
-    public Array<Vector2> getNormals() {
-        return normals;
+    public boolean isAxisAligned() {
+        return axisAligned;
+    }
+
+    // Bounds of axis aligned boxes, only valid if isAxisAligned() is true
+    public float getMinX() {
+        return vertices[0];
+    }
+
+    public float getMinY() {
+        return vertices[1];
+    }
+
+    public float getMaxX() {
+        return vertices[4];
+    }
+
+    public float getMaxY() {
+        return vertices[5];
     }
 
     public void setDamageCoefficient(float damageCoefficient) {
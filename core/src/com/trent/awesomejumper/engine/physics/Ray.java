@@ -1,6 +1,7 @@
 package com.trent.awesomejumper.engine.physics;
 
 import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.IntArray;
 import com.trent.awesomejumper.controller.entitymanagement.EntityManager;
 import com.trent.awesomejumper.engine.entity.Entity;
 import com.trent.awesomejumper.models.projectile.Projectile;
@@ -26,10 +27,11 @@ public class Ray {
     protected Vector2 dir;                                      // direction the ray travels
     protected float originX, originY, xDir, yDir;               // atomic components
     public static final float INFINITE = Float.MAX_VALUE;       // static constant for infinite length
+    public static final float NO_INTERSECTION = -1f;            // returned if a box is not hit
     protected float length = 0f;                                // default length is 0
 
     protected HashMap<Integer, Vector2> penetratedEntities = new HashMap<>();
-    protected ArrayList<Vector2> hitHashCells = new ArrayList<>();
+    protected IntArray hitHashCells = new IntArray();           // flat indexes of crossed hash cells
     protected ArrayList<Vector2> penetrations = new ArrayList<>();
     protected boolean active = true;
 
@@ -111,7 +113,43 @@ public class Ray {
         return new Intersection(result,false, originCoefficient, other);
     }
 
-    public void addHitHashCell(Vector2 index) {
+    /**
+     * Calculates the closest intersection between this ray and the edges of a collision box.
+     * Every edge is tested like a ray from its vertex to the next one (see getIntersection()),
+     * but read from the packed geometry of the box, so no objects are created.
+     * @param box collision box whose edges are tested
+     * @param result holds the closest intersection point, if there is one
+     * @return distance of the closest intersection to the origin, NO_INTERSECTION if the box is not hit
+     */
+    public float getClosestIntersection(CollisionBox box, Vector2 result) {
+        float closest = NO_INTERSECTION;
+        for (int i = 0; i < box.getVertexCount(); i++) {
+            float otherX = box.getVertexX(i);
+            float otherY = box.getVertexY(i);
+            float otherLength = (float) Math.sqrt(box.getEdgeX(i) * box.getEdgeX(i) + box.getEdgeY(i) * box.getEdgeY(i));
+            if (otherLength == 0f)
+                continue;
+            float otherXDir = box.getEdgeX(i) / otherLength;
+            float otherYDir = box.getEdgeY(i) / otherLength;
+
+            // Same test as in getIntersection()
+            if (xDir == otherXDir && yDir == otherYDir)
+                continue;
+            float otherCoefficient = (xDir*(otherY - originY) + yDir*(originX - otherX)) / (otherXDir*yDir - otherYDir*xDir);
+            float originCoefficient = (otherX + otherCoefficient*otherXDir - originX) / xDir;
+
+            if (otherCoefficient <= otherLength && originCoefficient <= length && otherCoefficient > 0 && originCoefficient >= 0
+                    && (closest == NO_INTERSECTION || originCoefficient < closest)) {
+                closest = originCoefficient;
+                // result is rounded to avoid errors
+                result.x = Math.round((origin.x + dir.x * originCoefficient) * 10000.0f) / 10000f;
+                result.y = Math.round((origin.y + dir.y * originCoefficient) * 10000.0f) / 10000f;
+            }
+        }
+        return closest;
+    }
+
+    public void addHitHashCell(int index) {
         hitHashCells.add(index);
     }
 
@@ -152,7 +190,7 @@ public class Ray {
         return length;
     }
 
-    public ArrayList<Vector2> getHitHashCells() {
+    public IntArray getHitHashCells() {
         return hitHashCells;
     }
     public ArrayList<Vector2> getPenetrations() {
@@ -2,6 +2,8 @@ package com.trent.awesomejumper.game;
 
 import com.badlogic.gdx.Game;
 import com.badlogic.gdx.assets.AssetManager;
+import com.trent.awesomejumper.controller.collision.Broadphase;
+import com.trent.awesomejumper.controller.collision.ContactSolver;
 import com.trent.awesomejumper.screens.SplashScreen;
 
 public class AwesomeJumperMain extends Game {
@@ -12,6 +14,9 @@ public class AwesomeJumperMain extends Game {
     private static boolean drawHitboxes = false;
     private static boolean drawInfo = false;
     private static boolean drawBody = false;
+    private static Broadphase.Type broadphaseType = Broadphase.Type.SPATIAL_HASH;
+    private static int worldCollisionThreads = 1;
+    private static int solverIterations = ContactSolver.DEFAULT_ITERATIONS;
 
     public AssetManager assetManager = new AssetManager();
 
@@ -56,6 +61,42 @@ public class AwesomeJumperMain extends Game {
     }
 
 
+    /**
+     * Selects the broad phase used for entity/entity collision detection. Has to be called before
+     * the world is created.
+     */
+    public static void setBroadphaseType(Broadphase.Type type) {
+        broadphaseType = type;
+    }
+
+    public static Broadphase.Type getBroadphaseType() {
+        return broadphaseType;
+    }
+
+    /**
+     * Selects the number of threads world collisions are resolved with, 1 for the serial path.
+     * Has to be called before the world is created.
+     */
+    public static void setWorldCollisionThreads(int threads) {
+        worldCollisionThreads = threads;
+    }
+
+    public static int getWorldCollisionThreads() {
+        return worldCollisionThreads;
+    }
+
+    /**
+     * Selects the number of iterations of the entity/entity contact solver. Has to be called
+     * before the world is created.
+     */
+    public static void setSolverIterations(int iterations) {
+        solverIterations = iterations;
+    }
+
+    public static int getSolverIterations() {
+        return solverIterations;
+    }
+
     public boolean entitiesEnabled() {
         return drawEntities;
     }
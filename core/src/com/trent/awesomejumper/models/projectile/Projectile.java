@@ -9,6 +9,7 @@ import com.trent.awesomejumper.engine.modelcomponents.Graphics;
 import com.trent.awesomejumper.engine.physics.CollisionBox;
 import com.trent.awesomejumper.engine.physics.Ray;
 import static com.trent.awesomejumper.engine.modelcomponents.Body.BodyBuilder;
+import static com.trent.awesomejumper.engine.modelcomponents.ModelComponent.ComponentID.PROJECTILE;
 
 /**
  * Created by Sinthu on 20.12.2015.
@@ -56,6 +57,7 @@ public class Projectile extends Entity {
 
         state = State.IDLE;
         type = Type.PROJECTILE_ENTITY;
+        enableComponent(PROJECTILE);
         setOwner(this);
         body.add(projectileBox);
 
@@ -17,6 +17,7 @@ import com.trent.awesomejumper.controller.WorldController;
 import com.trent.awesomejumper.engine.entity.Entity;
 import com.trent.awesomejumper.game.AwesomeJumperMain;
 import com.trent.awesomejumper.models.lootable.Lootable;
+import com.trent.awesomejumper.utils.Profiler;
 
 /**
  * Created by Sinthu on 12.06.2015.
@@ -66,10 +67,14 @@ public class GameScreen implements Screen {
         Gdx.gl.glClearColor(0.3f, 0.3f, 0.3f, 1f);
         Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
         // TODO: add domain specific methods: input, graphics, network, ai, sound, physics
+        Profiler.begin(Profiler.Phase.INPUT);
         inputHandler.update();
+        Profiler.end(Profiler.Phase.INPUT);
         controller.update(delta);
         renderingEngine.render();
         CollisionController.calledPerFrame = 0;
+        CollisionController.cachedRejects = 0;
+        Profiler.endFrame();
     }
 
     @Override
@@ -94,7 +99,8 @@ public class GameScreen implements Screen {
 
     @Override
     public void dispose() {
-
+        controller.dispose();
+        renderingEngine.dispose();
     }
 
 
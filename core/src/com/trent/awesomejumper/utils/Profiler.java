@@ -0,0 +1,115 @@
+package com.trent.awesomejumper.utils;
+
+import com.badlogic.gdx.utils.TimeUtils;
+
+import java.util.Arrays;
+
+/**
+ * Scoped timers for the phases of a frame. The time spent between begin() and end() of a phase is
+ * summed up over the frame, so a phase may be entered more than once per frame. endFrame() pushes
+ * the totals of all phases into a rolling window of the last WINDOW frames, from which min, average
+ * and 99th percentile are calculated.
+ * Only meant to be used from the game loop thread.
+ */
+public class Profiler {
+
+    // MEMBERS & INSTANCES
+    // ---------------------------------------------------------------------------------------------
+
+    public enum Phase {
+        INPUT("INPUT"),
+        WORLD_COLLISIONS("WORLD CD"),
+        ENTITY_COLLISIONS("ENTITY CD"),
+        PROJECTILE_COLLISIONS("PROJECTILE CD"),
+        RAY_CASTS("RAY CASTS"),
+        GARBAGE_REMOVAL("GARBAGE REMOVAL"),
+        SPATIAL_UPDATE("SPATIAL UPDATE"),
+        INTEGRATION("INTEGRATION"),
+        TILE_RENDER("TILE RENDER"),
+        ENTITY_RENDER("ENTITY RENDER"),
+        POPUPS("POPUPS");
+
+        public final String tag;
+
+        Phase(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+    public static final int WINDOW = 240;       // number of frames the statistics are taken over
+    private static final float NANOS_PER_MS = 1000000f;
+
+    private static final long[] startTimes = new long[PHASES.length];
+    private static final long[] frameTimes = new long[PHASES.length];
+    private static final long[][] samples = new long[PHASES.length][WINDOW];
+    private static final long[] sortBuffer = new long[WINDOW];
+    private static int sampleIndex = 0;
+    private static int sampleCount = 0;
+
+    private Profiler() {
+
+    }
+
+    // METHODS & FUNCTIONS
+    // ---------------------------------------------------------------------------------------------
+
+    public static void begin(Phase phase) {
+        startTimes[phase.ordinal()] = TimeUtils.nanoTime();
+    }
+
+    public static void end(Phase phase) {
+        frameTimes[phase.ordinal()] += TimeUtils.nanoTime() - startTimes[phase.ordinal()];
+    }
+
+    /**
+     * Stores the time spent in every phase during this frame and starts the next frame.
+     */
+    public static void endFrame() {
+        for (int i = 0; i < PHASES.length; i++) {
+            samples[i][sampleIndex] = frameTimes[i];
+            frameTimes[i] = 0;
+        }
+        sampleIndex = (sampleIndex + 1) % WINDOW;
+        if (sampleCount < WINDOW)
+            sampleCount++;
+    }
+
+    /**
+     * Returns min, average and 99th percentile of the phase over the window in milliseconds.
+     */
+    public static String getSummary(Phase phase) {
+        if (sampleCount == 0)
+            return "-";
+
+        System.arraycopy(samples[phase.ordinal()], 0, sortBuffer, 0, sampleCount);
+        Arrays.sort(sortBuffer, 0, sampleCount);
+        long sum = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            sum += sortBuffer[i];
+        }
+        int p99 = (int) Math.ceil(sampleCount * 0.99) - 1;
+
+        return String.format("MIN %.3f AVG %.3f P99 %.3f MS",
+                sortBuffer[0] / NANOS_PER_MS, sum / (float) sampleCount / NANOS_PER_MS,
+                sortBuffer[p99] / NANOS_PER_MS);
+    }
+
+    /**
+     * Returns the summaries of all phases, one line per phase.
+     */
+    public static String getReport() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("PROFILER, LAST ").append(sampleCount).append(" FRAMES");
+        for (Phase phase : PHASES) {
+            builder.append('\n').append(String.format("%-16s", phase.tag)).append(getSummary(phase));
+        }
+        return builder.toString();
+    }
+
+    public static void reset() {
+        Arrays.fill(frameTimes, 0);
+        sampleIndex = 0;
+        sampleCount = 0;
+    }
+}
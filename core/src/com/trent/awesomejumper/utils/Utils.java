@@ -84,14 +84,16 @@ public class Utils {
     /**
      * Returns the projection min and max values of a shape (CollisionBox) onto an axis
      * @param box represents the shape which will be projected.
-     * @param axis represents the axis on which the shape will be projected.
+     * @param axisX x component of the axis on which the shape will be projected.
+     * @param axisY y component of the axis on which the shape will be projected.
+     * @param result interval the min and max values are written to
      */
-    public static Interval getProjection(CollisionBox box, Vector2 axis) {
-        float min = dot(box.getVertices().get(0), axis);
+    public static Interval getProjection(CollisionBox box, float axisX, float axisY, Interval result) {
+        float min = dot(box.getVertexX(0), box.getVertexY(0), axisX, axisY);
         float max = min;
 
-        for (int i = 1; i < box.getVertices().size; i++) {
-            float projection = dot(box.getVertices().get(i), axis);
+        for (int i = 1; i < box.getVertexCount(); i++) {
+            float projection = dot(box.getVertexX(i), box.getVertexY(i), axisX, axisY);
             /**
              *  If the calculated projection is bigger or smaller than the min/max,
              *  the new value will be applied.
@@ -105,7 +107,9 @@ public class Utils {
 
         }
 
-        return new Interval(min, max);
+        result.min = min;
+        result.max = max;
+        return result;
     }
 
     // CHECK WHETHER TWO PROJECTIONS OVERLAP
@@ -134,6 +138,47 @@ public class Utils {
     }
 
 
+    // SEGMENT / AABB INTERSECTION
+    // ---------------------------------------------------------------------------------------------
+    /**
+     * Returns the fraction of the segment (x1,y1) -> (x2,y2) at which it enters the axis aligned
+     * box (minX,minY,maxX,maxY), using the slab method.
+     * @return fraction in [0,1], 0 if the segment starts inside the box, -1 if it misses the box
+     */
+    public static float getSegmentEntry(float x1, float y1, float x2, float y2,
+                                        float minX, float minY, float maxX, float maxY) {
+        float tMin = 0f;
+        float tMax = 1f;
+
+        float dx = x2 - x1;
+        if (dx == 0f) {
+            if (x1 < minX || x1 > maxX)
+                return -1f;
+        } else {
+            float t1 = (minX - x1) / dx;
+            float t2 = (maxX - x1) / dx;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+            if (tMin > tMax)
+                return -1f;
+        }
+
+        float dy = y2 - y1;
+        if (dy == 0f) {
+            if (y1 < minY || y1 > maxY)
+                return -1f;
+        } else {
+            float t1 = (minY - y1) / dy;
+            float t2 = (maxY - y1) / dy;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+            if (tMin > tMax)
+                return -1f;
+        }
+        return tMin;
+    }
+
+
     // DIFFERENTIAL VECTOR
     // ---------------------------------------------------------------------------------------------
     public static Vector2 sub(Vector2 start, Vector2 end) {
@@ -2,15 +2,30 @@ package com.trent.awesomejumper.desktop;
 
 import com.badlogic.gdx.backends.lwjgl.LwjglApplication;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplicationConfiguration;
+import com.trent.awesomejumper.controller.collision.Broadphase;
 import com.trent.awesomejumper.engine.entity.Entity;
 import com.trent.awesomejumper.game.AwesomeJumperMain;
 
+import java.util.Arrays;
+
 public class DesktopLauncher {
 	public static void main (String[] arg) {
 		LwjglApplicationConfiguration config = new LwjglApplicationConfiguration();
 		config.width = 1280;
 		config.height = 720;
 		Entity.entityCount = 0;
+		// select the broad phase with e.g. "--broadphase=SWEEP_AND_PRUNE", unknown types keep the default
+		for (String a : arg) {
+			if (a.startsWith("--broadphase=")) {
+				String type = a.substring("--broadphase=".length());
+				try {
+					AwesomeJumperMain.setBroadphaseType(Broadphase.Type.valueOf(type.toUpperCase()));
+				} catch (IllegalArgumentException e) {
+					System.err.println("UNKNOWN BROADPHASE " + type + ", USING THE DEFAULT. VALID TYPES: "
+							+ Arrays.toString(Broadphase.Type.values()));
+				}
+			}
+		}
 		new LwjglApplication(new AwesomeJumperMain(), config);
 	}
 }
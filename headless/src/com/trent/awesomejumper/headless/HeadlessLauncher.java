@@ -0,0 +1,64 @@
+package com.trent.awesomejumper.headless;
+
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.trent.awesomejumper.controller.collision.Broadphase;
+import com.trent.awesomejumper.controller.levelgeneration.RandomLevelGenerator;
+import com.trent.awesomejumper.engine.entity.Entity;
+import com.trent.awesomejumper.game.AwesomeJumperMain;
+
+import java.util.Arrays;
+
+/**
+ * Runs the world simulation without a window or graphics and reports the ticks per second.
+ * Options: --seed=, --ticks=, --warmup=, --delta=, --broadphase=, --threads= and --iterations=
+ * An invalid option aborts the run with a short message instead of a stack trace.
+ */
+public class HeadlessLauncher {
+	public static void main (String[] arg) {
+		long seed = RandomLevelGenerator.DEFAULT_SEED;
+		int ticks = 10000;
+		int warmupTicks = 600;
+		float delta = 1 / 60f;
+		for (String a : arg) {
+			try {
+				if (a.startsWith("--seed="))
+					seed = Long.parseLong(a.substring("--seed=".length()));
+				else if (a.startsWith("--ticks="))
+					ticks = Integer.parseInt(a.substring("--ticks=".length()));
+				else if (a.startsWith("--warmup="))
+					warmupTicks = Integer.parseInt(a.substring("--warmup=".length()));
+				else if (a.startsWith("--delta="))
+					delta = Float.parseFloat(a.substring("--delta=".length()));
+				else if (a.startsWith("--broadphase="))
+					AwesomeJumperMain.setBroadphaseType(Broadphase.Type.valueOf(a.substring("--broadphase=".length()).toUpperCase()));
+				else if (a.startsWith("--threads="))
+					AwesomeJumperMain.setWorldCollisionThreads(parsePositive(a.substring("--threads=".length())));
+				else if (a.startsWith("--iterations="))
+					AwesomeJumperMain.setSolverIterations(parsePositive(a.substring("--iterations=".length())));
+			} catch (IllegalArgumentException e) {
+				System.err.println("INVALID OPTION " + a + (a.startsWith("--broadphase=")
+						? ". VALID TYPES: " + Arrays.toString(Broadphase.Type.values()) : ""));
+				System.exit(1);
+			}
+		}
+		Entity.entityCount = 0;
+		HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+		try {
+			new HeadlessApplication(new HeadlessSimulation(seed, ticks, warmupTicks, delta), config);
+		} catch (IllegalArgumentException e) {
+			System.err.println("INVALID OPTIONS: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Parses a count which has to be at least 1. The simulation thread would only fail later on.
+	 */
+	private static int parsePositive(String value) {
+		int count = Integer.parseInt(value);
+		if (count < 1)
+			throw new IllegalArgumentException("COUNT MUST BE AT LEAST 1: " + value);
+		return count;
+	}
+}
@@ -0,0 +1,121 @@
+package com.trent.awesomejumper.headless;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.trent.awesomejumper.controller.WorldController;
+import com.trent.awesomejumper.controller.collision.CollisionController;
+import com.trent.awesomejumper.controller.entitymanagement.EntityList;
+import com.trent.awesomejumper.controller.entitymanagement.EntityManager;
+import com.trent.awesomejumper.controller.entitymanagement.WorldContainer;
+import com.trent.awesomejumper.engine.entity.Entity;
+import com.trent.awesomejumper.utils.Profiler;
+
+/**
+ * Steps the world simulation at a fixed delta as fast as possible, without rendering and input.
+ * The world is generated from a seed, entities are registered without graphics and no popups are
+ * created. The whole run happens in create(), afterwards the application exits.
+ */
+public class HeadlessSimulation extends ApplicationAdapter {
+
+    // MEMBERS & INSTANCES
+    // ---------------------------------------------------------------------------------------------
+
+    private static final String TAG = "HEADLESS";
+    private static final int REPORT_INTERVAL = 1000;    // ticks between two intermediate reports
+
+    private final long seed;
+    private final int ticks;
+    private final int warmupTicks;
+    private final float delta;
+
+    private WorldContainer worldContainer;
+    private WorldController controller;
+
+    // CONSTRUCTOR
+    // ---------------------------------------------------------------------------------------------
+
+    public HeadlessSimulation(long seed, int ticks, int warmupTicks, float delta) {
+        if (ticks <= 0 || warmupTicks < 0 || delta <= 0)
+            throw new IllegalArgumentException("TICKS AND DELTA MUST BE POSITIVE");
+        this.seed = seed;
+        this.ticks = ticks;
+        this.warmupTicks = warmupTicks;
+        this.delta = delta;
+    }
+
+    // METHODS & FUNCTIONS
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public void create() {
+        EntityManager entityManager = EntityManager.createEntityManager();
+        worldContainer = new WorldContainer(seed);
+        entityManager.setControllers(worldContainer, null);
+        worldContainer.initAllEntities();
+        controller = new WorldController(worldContainer);
+
+        Gdx.app.log(TAG, "SEED: " + Long.toString(seed) + " ENTITIES: " + Integer.toString(worldContainer.getEntities().size()));
+
+        for (int i = 0; i < warmupTicks; i++) {
+            step();
+        }
+
+        long start = TimeUtils.nanoTime();
+        long intervalStart = start;
+        for (int i = 1; i <= ticks; i++) {
+            step();
+            if (i % REPORT_INTERVAL == 0) {
+                long now = TimeUtils.nanoTime();
+                report("INTERVAL", REPORT_INTERVAL, now - intervalStart);
+                intervalStart = now;
+            }
+        }
+        report("TOTAL", ticks, TimeUtils.nanoTime() - start);
+        Gdx.app.log(TAG, "STATE CHECKSUM: " + Long.toHexString(stateChecksum()));
+        Gdx.app.log(TAG, Profiler.getReport());
+
+        Gdx.app.exit();
+    }
+
+    @Override
+    public void dispose() {
+        if (controller != null)
+            controller.dispose();
+    }
+
+    /**
+     * One simulation tick, the same as GameScreen.render without input and rendering.
+     */
+    private void step() {
+        controller.update(delta);
+        CollisionController.calledPerFrame = 0;
+        CollisionController.cachedRejects = 0;
+        Profiler.endFrame();
+    }
+
+    /**
+     * Hash of the positions and velocities of all entities. Runs with the same seed and ticks have
+     * to end with the same checksum, e.g. with a different number of world collision threads.
+     */
+    private long stateChecksum() {
+        long hash = 17;
+        EntityList entities = worldContainer.getEntities();
+        for (int i = 0; i < entities.size(); i++) {
+            Entity e = entities.get(i);
+            hash = 31 * hash + e.getID();
+            hash = 31 * hash + Float.floatToIntBits(e.getPosition().x);
+            hash = 31 * hash + Float.floatToIntBits(e.getPosition().y);
+            hash = 31 * hash + Float.floatToIntBits(e.getVelocity().x);
+            hash = 31 * hash + Float.floatToIntBits(e.getVelocity().y);
+        }
+        return hash;
+    }
+
+    private void report(String label, int tickCount, long nanos) {
+        double seconds = nanos / 1e9;
+        Gdx.app.log(TAG, String.format("%s: %d ticks in %.3f s | %.1f ticks/s | %.4f ms/tick | %d entities",
+                label, tickCount, seconds, tickCount / seconds, seconds * 1000.0 / tickCount,
+                worldContainer.getEntities().size()));
+    }
+}